@@ -0,0 +1,249 @@
+package batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import pt.iscte.poo.game.GameEngine;
+import pt.iscte.poo.game.Room;
+import pt.iscte.poo.gui.HeadlessDisplay;
+import replay.Replay;
+
+/**
+ * Corre todos os pares (sala, script) sem janela, em paralelo, num
+ * ForkJoinPool (work-stealing). Cada run tem o seu próprio motor e sala;
+ * só os templates das salas (imutáveis) são partilhados entre threads.
+ * <p>
+ * Uso: {@code java batch.BatchRunner <pasta de salas> <pasta ou ficheiro de scripts>... [-threads n] [-seed s]}
+ */
+public class BatchRunner {
+
+	// Ticks extra no fim do script para deixar cair o que ainda está a cair
+	private static final int SETTLE_TICKS = 200;
+
+	// Resultado de uma run
+	public static class RunResult {
+		private final String room;
+		private final String script;
+		private final boolean completed;
+		private final int deaths;
+		private final int moves;
+		private final int ticks;
+		private final int steps;
+		private final String error;
+
+		RunResult(String room, String script, boolean completed, int deaths, int moves, int ticks, int steps,
+				String error) {
+			this.room = room;
+			this.script = script;
+			this.completed = completed;
+			this.deaths = deaths;
+			this.moves = moves;
+			this.ticks = ticks;
+			this.steps = steps;
+			this.error = error;
+		}
+
+		public String getRoom() {
+			return room;
+		}
+
+		public String getScript() {
+			return script;
+		}
+
+		public boolean isCompleted() {
+			return completed;
+		}
+
+		public int getDeaths() {
+			return deaths;
+		}
+
+		public int getMoves() {
+			return moves;
+		}
+
+		public int getTicks() {
+			return ticks;
+		}
+
+		public int getSteps() {
+			return steps;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		@Override
+		public String toString() {
+			if (error != null)
+				return room + " | " + script + " | ERRO " + error;
+			return room + " | " + script + " | " + (completed ? "completo" : "incompleto") + " | mortes=" + deaths
+					+ " | moves=" + moves + " | ticks=" + ticks;
+		}
+	}
+
+	private final File roomsDir;
+	private final long seed;
+
+	public BatchRunner(File roomsDir, long seed) {
+		this.roomsDir = roomsDir;
+		this.seed = seed;
+	}
+
+	// Uma run: o script na sala até acabar ou até o nível ser completado
+	public RunResult run(String roomName, InputScript script) {
+		try {
+			GameEngine engine = new GameEngine(new HeadlessDisplay(), null, seed, roomsDir, roomName, false);
+			Room room = engine.getCurrentRoom();
+			if (room == null || !room.getName().equals(roomName))
+				return new RunResult(roomName, script.getName(), false, 0, 0, 0, 0, "sala não encontrada");
+
+			int steps = 0;
+			for (int i = 0; i < script.size() && engine.getLevelsCompleted() == 0; i++) {
+				int key = script.getKey(i);
+				engine.step(key == Replay.NO_KEY ? null : key, script.getTick(i));
+				steps++;
+			}
+			for (int i = 0; i < SETTLE_TICKS && engine.getLevelsCompleted() == 0
+					&& !engine.getCurrentRoom().isAtRest(); i++) {
+				engine.tick();
+				steps++;
+			}
+
+			return new RunResult(roomName, script.getName(), engine.getLevelsCompleted() > 0, engine.getDeaths(),
+					engine.getTotalMoves(), engine.getTicks(), steps, null);
+		} catch (RuntimeException e) {
+			return new RunResult(roomName, script.getName(), false, 0, 0, 0, 0, e.toString());
+		}
+	}
+
+	public List<RunResult> runAll(List<String> roomNames, List<InputScript> scripts, ForkJoinPool pool) {
+		RunResult[] results = new RunResult[roomNames.size() * scripts.size()];
+		pool.invoke(new Runs(roomNames, scripts, results, 0, results.length));
+		return Arrays.asList(results);
+	}
+
+	// Divide o intervalo de runs ao meio até sobrar uma; o pool equilibra o resto
+	private class Runs extends RecursiveTask<Void> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> rooms;
+		private final List<InputScript> scripts;
+		private final RunResult[] out;
+		private final int from;
+		private final int to;
+
+		Runs(List<String> rooms, List<InputScript> scripts, RunResult[] out, int from, int to) {
+			this.rooms = rooms;
+			this.scripts = scripts;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Void compute() {
+			if (to - from == 1) {
+				int room = from / scripts.size();
+				int script = from % scripts.size();
+				out[from] = run(rooms.get(room), scripts.get(script));
+				return null;
+			}
+			int mid = (from + to) >>> 1;
+			Runs left = new Runs(rooms, scripts, out, from, mid);
+			left.fork();
+			new Runs(rooms, scripts, out, mid, to).compute();
+			left.join();
+			return null;
+		}
+	}
+
+	public static List<String> listRooms(File dir) {
+		List<String> names = new ArrayList<>();
+		File[] files = dir.listFiles();
+		if (files == null)
+			return names;
+		for (File f : files)
+			if (f.isFile() && f.getName().endsWith(".txt"))
+				names.add(f.getName());
+		names.sort(null);
+		return names;
+	}
+
+	public static List<InputScript> loadScripts(File f) throws IOException {
+		List<InputScript> scripts = new ArrayList<>();
+		if (f.isDirectory()) {
+			File[] files = f.listFiles();
+			if (files == null)
+				return scripts;
+			Arrays.sort(files);
+			for (File s : files)
+				if (s.isFile())
+					scripts.add(InputScript.load(s));
+		} else {
+			scripts.add(InputScript.load(f));
+		}
+		return scripts;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Uso: BatchRunner <pasta de salas> <scripts>... [-threads n] [-seed s]");
+			return;
+		}
+
+		File roomsDir = new File(args[0]);
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = 0;
+		List<InputScript> scripts = new ArrayList<>();
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-threads") && i + 1 < args.length)
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed") && i + 1 < args.length)
+				seed = Long.parseLong(args[++i]);
+			else
+				scripts.addAll(loadScripts(new File(args[i])));
+		}
+
+		List<String> roomNames = listRooms(roomsDir);
+		if (roomNames.isEmpty() || scripts.isEmpty()) {
+			System.err.println("Sem salas ou sem scripts.");
+			return;
+		}
+
+		BatchRunner runner = new BatchRunner(roomsDir, seed);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long t0 = System.nanoTime();
+		List<RunResult> results = runner.runAll(roomNames, scripts, pool);
+		long nanos = System.nanoTime() - t0;
+		pool.shutdown();
+
+		int completed = 0, died = 0, errors = 0;
+		long steps = 0, ticks = 0;
+		for (RunResult r : results) {
+			System.out.println(r);
+			if (r.getError() != null)
+				errors++;
+			if (r.isCompleted())
+				completed++;
+			if (r.getDeaths() > 0)
+				died++;
+			steps += r.getSteps();
+			ticks += r.getTicks();
+		}
+
+		double secs = nanos / 1e9;
+		System.out.printf("%d runs (%d salas x %d scripts) em %.2f s com %d threads%n", results.size(),
+				roomNames.size(), scripts.size(), secs, threads);
+		System.out.printf("completas=%d com mortes=%d erros=%d%n", completed, died, errors);
+		System.out.printf("%.0f runs/s, %.0f passos/s, %.0f ticks/s%n", results.size() / secs, steps / secs,
+				ticks / secs);
+	}
+}
@@ -0,0 +1,144 @@
+package batch;
+
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import replay.Replay;
+
+/**
+ * Sequência de entradas para o motor, lida de um ficheiro de texto ou de um
+ * replay (.rpl).
+ * <p>
+ * Formato de texto, um token por palavra ({@code #} começa um comentário):
+ * 
+ * <pre>
+ * U D L R   mover o peixe controlado
+ * S         trocar de peixe
+ * Z Y       undo / redo
+ * X         reiniciar o nível
+ * T  Tn     avançar 1 (ou n) ticks
+ * </pre>
+ * 
+ * Qualquer outro token (ex: "RESTART", "DX") é um erro.
+ */
+public class InputScript {
+
+	private final String name;
+	private final int[] ticks;
+	private final int[] keys;
+
+	private InputScript(String name, int[] ticks, int[] keys) {
+		this.name = name;
+		this.ticks = ticks;
+		this.keys = keys;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int size() {
+		return ticks.length;
+	}
+
+	public int getTick(int i) {
+		return ticks[i];
+	}
+
+	public int getKey(int i) {
+		return keys[i];
+	}
+
+	public static InputScript load(File f) throws IOException {
+		if (f.getName().endsWith(Replay.EXTENSION)) {
+			Replay r = Replay.read(f);
+			int n = r.getEventCount();
+			int[] ticks = new int[n];
+			int[] keys = new int[n];
+			for (int i = 0; i < n; i++) {
+				ticks[i] = r.getTick(i);
+				keys[i] = r.getKey(i);
+			}
+			return new InputScript(f.getName(), ticks, keys);
+		}
+		return parse(f.getName(), Files.readAllLines(f.toPath(), StandardCharsets.UTF_8));
+	}
+
+	public static InputScript parse(String name, List<String> lines) throws IOException {
+		int[] ticks = new int[64];
+		int[] keys = new int[64];
+		int n = 0;
+		int tick = 0;
+
+		for (int ln = 0; ln < lines.size(); ln++) {
+			String line = lines.get(ln);
+			int hash = line.indexOf('#');
+			if (hash >= 0)
+				line = line.substring(0, hash);
+
+			for (String tok : line.trim().split("\\s+")) {
+				if (tok.isEmpty())
+					continue;
+				int key;
+				char c = Character.toUpperCase(tok.charAt(0));
+				// só o T leva mais alguma coisa (o número de ticks)
+				if (tok.length() > 1 && c != 'T')
+					throw new IOException(name + ":" + (ln + 1) + ": token inválido '" + tok + "'");
+				switch (c) {
+				case 'U':
+					key = KeyEvent.VK_UP;
+					break;
+				case 'D':
+					key = KeyEvent.VK_DOWN;
+					break;
+				case 'L':
+					key = KeyEvent.VK_LEFT;
+					break;
+				case 'R':
+					key = KeyEvent.VK_RIGHT;
+					break;
+				case 'S':
+					key = KeyEvent.VK_SPACE;
+					break;
+				case 'Z':
+					key = KeyEvent.VK_Z;
+					break;
+				case 'Y':
+					key = KeyEvent.VK_Y;
+					break;
+				case 'X':
+					key = KeyEvent.VK_R;
+					break;
+				case 'T':
+					int dt;
+					try {
+						dt = (tok.length() > 1) ? Integer.parseInt(tok.substring(1)) : 1;
+					} catch (NumberFormatException e) {
+						dt = -1;
+					}
+					if (dt < 0)
+						throw new IOException(name + ":" + (ln + 1) + ": token inválido '" + tok + "'");
+					tick += dt;
+					key = Replay.NO_KEY;
+					break;
+				default:
+					throw new IOException(name + ":" + (ln + 1) + ": token inválido '" + tok + "'");
+				}
+
+				if (n == ticks.length) {
+					ticks = Arrays.copyOf(ticks, n * 2);
+					keys = Arrays.copyOf(keys, n * 2);
+				}
+				ticks[n] = tick;
+				keys[n] = key;
+				n++;
+			}
+		}
+		return new InputScript(name, Arrays.copyOf(ticks, n), Arrays.copyOf(keys, n));
+	}
+}
@@ -9,23 +9,13 @@ import pt.iscte.poo.utils.Vector2D;
 
 public class BigFish extends GameCharacter {
 
-	private static BigFish INSTANCE = null;
 	private boolean facingRight = true;
 
-	private BigFish(Point2D pos, Room r) {
+	// Cada sala tem o seu próprio peixe (ver Room.getBigFish)
+	public BigFish(Point2D pos, Room r) {
 		super(pos, r);
 	}
 
-	public static BigFish getInstance(Point2D pos, Room r) {
-		if (INSTANCE == null)
-			INSTANCE = new BigFish(pos, r);
-		return INSTANCE;
-	}
-
-	public static BigFish getInstance() {
-		return INSTANCE;
-	}
-
 	@Override
 	public String getName() {
 		return facingRight ? "bigFishRight" : "bigFishLeft";
@@ -36,10 +26,13 @@ public class BigFish extends GameCharacter {
 		if (delta == null)
 			return;
 		// atualizar facing
+		boolean wasRight = facingRight;
 		if (delta.getX() > 0)
 			facingRight = true;
 		else if (delta.getX() < 0)
 			facingRight = false;
+		if (facingRight != wasRight && getRoom() != null)
+			getRoom().objectChanged(this); // muda de imagem, mesmo que não se mexa
 
 		// guarda posição inicial para saber se super.move já moveu o peixe
 		Point2D start = getPosition();
@@ -162,8 +155,5 @@ public class BigFish extends GameCharacter {
 		// TODO Auto-generated method stub
 		return w == GameObject.Weight.LIGHT || w == GameObject.Weight.HEAVY;
 	}
-	public static void resetInstance() {
-	    INSTANCE = null;
-	}
 
 }
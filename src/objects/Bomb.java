@@ -1,8 +1,6 @@
 package objects;
 
-import pt.iscte.poo.game.GameEngine;
 import pt.iscte.poo.game.Room;
-import pt.iscte.poo.gui.ImageGUI;
 import pt.iscte.poo.utils.Point2D;
 import pt.iscte.poo.utils.Vector2D;
 
@@ -52,6 +50,30 @@ public class Bomb extends Movable implements Explodable {
 		return Weight.LIGHT;
 	}
 
+	// Em queda e armada: explode ao aterrar (faz parte do estado da sala)
+	public boolean isFalling() {
+		return armed && wasFalling;
+	}
+
+	// Pela sala, para o hash acompanhar a mudança
+	private void setFalling(Room room, boolean falling) {
+		room.changeState(this, new boolean[] { armed || falling, falling });
+	}
+
+	@Override
+	public Object saveState() {
+		return new boolean[] { armed, wasFalling };
+	}
+
+	@Override
+	public void restoreState(Object state) {
+		if (state instanceof boolean[]) {
+			boolean[] s = (boolean[]) state;
+			armed = s[0];
+			wasFalling = s[1];
+		}
+	}
+
 	@Override
 	public void explode(Room room, Point2D center) {
 		if (room == null || center == null)
@@ -128,22 +150,11 @@ public class Bomb extends Movable implements Explodable {
 		}
 
 		// --- 3) remover a própria bomba
+		// (a janela recebe as remoções e os efeitos pelos eventos da sala)
 		try {
 			room.removeObject(this);
 		} catch (Throwable ignored) {
 		}
-
-		// FORÇAR actualização do GUI para refletir imediatamente as remoções/effects.
-		try {
-			if (ImageGUI.getInstance() != null) {
-				try {
-					GameEngine.getInstance().updateGUI();
-				} catch (Exception ignore) {
-					ImageGUI.getInstance().update();
-				}
-			}
-		} catch (Exception ignored) {
-		}
 	}
 
 	@Override
@@ -158,14 +169,13 @@ public class Bomb extends Movable implements Explodable {
 		// Caso 1: célula vazia ou apenas com transponíveis (ex: água) -> mover para lá
 		if (top == null || top.isTransposable()) {
 			room.moveObject(this, to);
-			wasFalling = true;
-			armed = true; // arma-se quando começa/continua a cair
+			setFalling(room, true); // arma-se quando começa/continua a cair
 			return;
 		}
 
 		// Caso 2: topo é GameCharacter -> não explode e não se move
 		if (top instanceof GameCharacter) {
-			wasFalling = false;
+			setFalling(room, false);
 			return;
 		}
 		// topo é objecto sólido "normal" (não parede): explode apenas se vinha de queda e está armada
@@ -174,7 +184,7 @@ public class Bomb extends Movable implements Explodable {
 			return;
 		} else {
 			// está pousada sobre um objecto sem ter vindo de queda => não explode
-			wasFalling = false;
+			setFalling(room, false);
 			return;
 		}
 	}
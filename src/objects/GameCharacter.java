@@ -3,7 +3,6 @@ package objects;
 import pt.iscte.poo.utils.Point2D;
 import pt.iscte.poo.utils.Vector2D;
 import pt.iscte.poo.game.Room;
-import pt.iscte.poo.gui.ImageGUI;
 
 public abstract class GameCharacter extends GameObject {
 
@@ -36,6 +35,20 @@ public abstract class GameCharacter extends GameObject {
 		this.isOut = out;
 	}
 
+	@Override
+	public Object saveState() {
+		return new boolean[] { alive, isOut };
+	}
+
+	@Override
+	public void restoreState(Object state) {
+		if (state instanceof boolean[]) {
+			boolean[] s = (boolean[]) state;
+			alive = s[0];
+			isOut = s[1];
+		}
+	}
+
 	@Override
 	public void move(Vector2D delta) {
 		if (delta == null || !alive || isOut)
@@ -51,21 +64,18 @@ public abstract class GameCharacter extends GameObject {
 
 		// se o destino estiver FORA dos limites 10x10 => considerada saída
 		if (!inside10x10) {
-			setOut(true);
-			try {
-				ImageGUI.getInstance().removeImage(this);
-			} catch (Exception ignored) {
-			}
+			// remover antes de marcar a saída, para o journal guardar o estado anterior
 			if (r != null)
 				r.removeObject(this);
+			setOut(true);
 			try {
 				setPosition(new Point2D(-1, -1));
 				setRoom(null);
 			} catch (Throwable ignored) {
 			}
 			try {
-				if (ImageGUI.getInstance() != null)
-					ImageGUI.getInstance().update();
+				if (r != null)
+					r.getDisplay().update();
 			} catch (Exception ignored) {
 			}
 			return;
@@ -101,7 +111,6 @@ public abstract class GameCharacter extends GameObject {
 		if (!alive)
 			return;
 
-		alive = false;
 		Room r = getRoom();
 		Point2D pos = getPosition();
 
@@ -117,27 +126,26 @@ public abstract class GameCharacter extends GameObject {
 				}
 
 				try {
-					if (ImageGUI.getInstance() != null) {
-						ImageGUI.getInstance().addImage(fx);
-						ImageGUI.getInstance().update();
-					}
+					r.getDisplay().addImage(fx);
+					r.getDisplay().update();
 				} catch (Throwable t) {
 				}
 			} else {
 			}
 		} catch (Throwable ignored) {
 		}
-		//Lógica original de morte
+		//Lógica original de morte (alive só passa a false depois de remover, por causa do journal)
 		if (r != null) {
 			r.removeObject(this);
 		}
+		alive = false;
 
 		setRoom(null);
 		setPosition(new Point2D(-1, -1));
 
 		try {
-			if (ImageGUI.getInstance() != null)
-				ImageGUI.getInstance().update();
+			if (r != null)
+				r.getDisplay().update();
 		} catch (Exception ignored) {
 		}
 	}
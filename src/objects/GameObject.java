@@ -69,4 +69,12 @@ public abstract class GameObject implements ImageTile {
 	
 	public abstract Weight getWeight();
 
+	// Estado interno que não se vê na posição (para o undo); null se não houver
+	public Object saveState() {
+		return null;
+	}
+
+	public void restoreState(Object state) {
+	}
+
 }
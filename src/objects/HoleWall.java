@@ -19,6 +19,11 @@ public class HoleWall extends GameObject implements Passable {
 		return 2;
 	}
 
+	@Override
+	public boolean isStatic() {
+		return true;
+	}
+
 	@Override
 	public boolean isTransposable() {
 		return false;
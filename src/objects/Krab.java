@@ -3,14 +3,9 @@ package objects;
 import pt.iscte.poo.game.Room;
 import pt.iscte.poo.utils.Point2D;
 import pt.iscte.poo.utils.Vector2D;
-import pt.iscte.poo.gui.ImageGUI;
-
-import java.util.Random;
 
 public class Krab extends Movable {
 
-    private final Random rnd = new Random();
-
     public Krab(Point2D p, Room r) {
         super(p, r);
     }
@@ -89,11 +84,11 @@ public class Krab extends Movable {
             return true;
         } else if (top instanceof BigFish) {
             // Crab morre se tocar no BigFish -> remover crab (e imagem)
-            try { ImageGUI.getInstance().removeImage(this); } catch (Exception ignored) {}
+            try { room.getDisplay().removeImage(this); } catch (Exception ignored) {}
             room.removeObject(this);
             return false;
         } else if (top instanceof Trap) {
-            try { ImageGUI.getInstance().removeImage(this); } catch (Exception ignored) {}
+            try { room.getDisplay().removeImage(this); } catch (Exception ignored) {}
             room.removeObject(this);
             return false;
         } else {
@@ -101,8 +96,9 @@ public class Krab extends Movable {
         }
     }
 
+    // Usa o Random da sala, para o jogo ser reproduzível a partir da semente
     public void randomStep(Room room) {
-        int dx = rnd.nextBoolean() ? 1 : -1;
+        int dx = room.getRandom().nextBoolean() ? 1 : -1;
         tryMoveHorizontal(room, dx);
     }
 }
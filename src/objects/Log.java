@@ -3,8 +3,6 @@ package objects;
 import pt.iscte.poo.utils.Point2D;
 import pt.iscte.poo.utils.Vector2D;
 import pt.iscte.poo.game.Room;
-import pt.iscte.poo.game.GameEngine;
-import pt.iscte.poo.gui.ImageGUI;
 
 public class Log extends GameObject implements Crushable {
 	public Log(Point2D p, Room r) {
@@ -55,20 +53,10 @@ public class Log extends GameObject implements Crushable {
 			}
 		} catch (Throwable ignored) {
 		}
-		// remover o tronco
+		// remover o tronco (a janela é avisada pela sala)
 		try {
 			room.removeObject(this);
 		} catch (Throwable ignored) {
 		}
-		// Forçar GUI update para mostrar efeito/removals
-		try {
-			GameEngine.getInstance().updateGUI();
-		} catch (Throwable t) {
-			try {
-				if (ImageGUI.getInstance() != null)
-					ImageGUI.getInstance().update();
-			} catch (Throwable ignored) {
-			}
-		}
 	}
 }
@@ -37,11 +37,46 @@ public final class ObjectType {
             case 'K':
                 return new Krab(pos, room);   
             case 'B':
-                return BigFish.getInstance(pos, room);
+                return new BigFish(pos, room);
             case 'S':
-                return SmallFish.getInstance(pos, room);
+                return new SmallFish(pos, room);
             default:
                 return null;
         }
     }
+
+    // Inverso de create: o carácter que representa o objeto ('\0' se não tiver, ex: Effect)
+    public static char tokenOf(GameObject obj) {
+        if (obj instanceof Water)
+            return ' ';
+        if (obj instanceof Wall)
+            return 'W';
+        if (obj instanceof HoleWall)
+            return 'X';
+        if (obj instanceof SteelH)
+            return 'H';
+        if (obj instanceof SteelVertical)
+            return 'V';
+        if (obj instanceof Cup)
+            return 'C';
+        if (obj instanceof Rock)
+            return 'R';
+        if (obj instanceof Anchor)
+            return 'A';
+        if (obj instanceof Bomb)
+            return 'b';
+        if (obj instanceof Trap)
+            return 'T';
+        if (obj instanceof Log)
+            return 'Y';
+        if (obj instanceof Buoy)
+            return 'U';
+        if (obj instanceof Krab)
+            return 'K';
+        if (obj instanceof BigFish)
+            return 'B';
+        if (obj instanceof SmallFish)
+            return 'S';
+        return '\0';
+    }
 }
@@ -8,23 +8,13 @@ import pt.iscte.poo.game.Room;
 	
 	public class SmallFish extends GameCharacter {
 	
-		private static SmallFish INSTANCE = null;
 		private boolean facingRight = true;
 	
-		private SmallFish(Point2D pos, Room r) {
+		// Cada sala tem o seu próprio peixe (ver Room.getSmallFish)
+		public SmallFish(Point2D pos, Room r) {
 			super(pos, r);
 		}
 	
-		public static synchronized SmallFish getInstance(Point2D pos, Room r) {
-			if (INSTANCE == null)
-				INSTANCE = new SmallFish(pos, r);
-			return INSTANCE;
-		}
-	
-		public static SmallFish getInstance() {
-			return INSTANCE;
-		}
-	
 		@Override
 		public String getName() {
 			return facingRight ? "smallFishRight" : "smallFishLeft";
@@ -36,10 +26,13 @@ import pt.iscte.poo.game.Room;
 				return;
 
 			// atualizar facing
+			boolean wasRight = facingRight;
 			if (delta.getX() > 0)
 				facingRight = true;
 			else if (delta.getX() < 0)
 				facingRight = false;
+			if (facingRight != wasRight && getRoom() != null)
+				getRoom().objectChanged(this); // muda de imagem, mesmo que não se mexa
 
 			// guarda posição inicial para saber se super.move já moveu o peixe
 			Point2D start = getPosition();
@@ -147,8 +140,5 @@ import pt.iscte.poo.game.Room;
 			// TODO Auto-generated method stub
 			return w == GameObject.Weight.LIGHT;
 		}
-		public static void resetInstance() {
-		    INSTANCE = null;
-		}
 
 	}
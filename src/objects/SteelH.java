@@ -19,6 +19,11 @@ public class SteelH extends GameObject {
 		return 1;
 	}
 
+	@Override
+	public boolean isStatic() {
+		return true;
+	}
+
 	@Override
 	public boolean isTransposable() {
 		return false;
@@ -19,6 +19,11 @@ public class Wall extends GameObject {
 		return 2;
 	}
 
+	@Override
+	public boolean isStatic() {
+		return true;
+	}
+
 	@Override
 	public boolean isTransposable() {
 		return false;
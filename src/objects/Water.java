@@ -19,6 +19,11 @@ public class Water extends GameObject {
 		return 0;
 	}
 
+	@Override
+	public boolean isStatic() {
+		return true;
+	}
+
 	@Override
 	public boolean isTransposable() {
 		return true;
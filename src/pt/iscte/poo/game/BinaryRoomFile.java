@@ -0,0 +1,140 @@
+package pt.iscte.poo.game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Formato binário das salas (.bin), para salas grandes geradas.
+ * <p>
+ * Cabeçalho: "ROOM" (4 bytes), versão (short), largura e altura (int).
+ * Depois um byte por célula com o mesmo token do ficheiro .txt (0 = célula
+ * inexistente), e no fim uma lista esparsa de objetos extra: número de
+ * entradas (int) seguido de (x int, y int, token byte) por entrada.
+ * Todos os valores em big-endian.
+ * <p>
+ * A leitura é feita por memory-mapping do ficheiro. Só a leitura do
+ * template fica mais rápida: criar a Room continua a criar uma Water e um
+ * objeto por célula (numa sala de 1000x1000 são ~1,8 milhões de objetos e
+ * demora segundos, seja qual for o formato). Para converter salas:
+ * <pre>java pt.iscte.poo.game.BinaryRoomFile rooms/room0.txt [rooms/room0.bin]</pre>
+ * ou, com uma pasta, converte todos os .txt dessa pasta.
+ * <p>
+ * A sala lida de room0.bin chama-se "room0.txt": é a mesma sala, só noutro
+ * formato (os níveis, os highscores e os replays usam esse nome).
+ */
+public final class BinaryRoomFile {
+
+	public static final String EXTENSION = ".bin";
+
+	private static final int MAGIC = 0x524F4F4D; // "ROOM"
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 2 + 4 + 4;
+
+	private BinaryRoomFile() {
+	}
+
+	public static RoomTemplate read(File f) throws IOException {
+		long modified = f.lastModified();
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			buf.order(ByteOrder.BIG_ENDIAN);
+
+			if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC)
+				throw new IOException("Não é uma sala binária: " + f.getName());
+			short version = buf.getShort();
+			if (version != VERSION)
+				throw new IOException("Versão de sala não suportada: " + version);
+
+			int w = buf.getInt();
+			int h = buf.getInt();
+			if (w < 0 || h < 0 || (long) w * h > buf.remaining())
+				throw new IOException("Dimensões inválidas: " + w + "x" + h);
+
+			byte[] raw = new byte[w * h];
+			buf.get(raw);
+			char[] cells = new char[raw.length];
+			for (int i = 0; i < raw.length; i++)
+				cells[i] = (char) (raw[i] & 0xFF);
+
+			int[] extras = new int[0];
+			if (buf.remaining() >= 4) {
+				int n = buf.getInt();
+				if (n < 0 || (long) n * 9 > buf.remaining())
+					throw new IOException("Lista de extras inválida: " + n);
+				extras = new int[n * 3];
+				for (int i = 0; i < n; i++) {
+					extras[i * 3] = buf.getInt();
+					extras[i * 3 + 1] = buf.getInt();
+					extras[i * 3 + 2] = buf.get() & 0xFF;
+				}
+			}
+			return new RoomTemplate(textNameFor(f.getName()), modified, w, h, cells, extras);
+		}
+	}
+
+	public static void write(RoomTemplate t, File out) throws IOException {
+		try (OutputStream os = Files.newOutputStream(out.toPath());
+				DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os))) {
+			dos.writeInt(MAGIC);
+			dos.writeShort(VERSION);
+			dos.writeInt(t.getWidth());
+			dos.writeInt(t.getHeight());
+			for (int y = 0; y < t.getHeight(); y++)
+				for (int x = 0; x < t.getWidth(); x++)
+					dos.writeByte(t.tokenAt(x, y));
+
+			dos.writeInt(t.getExtraCount());
+			for (int i = 0; i < t.getExtraCount(); i++) {
+				dos.writeInt(t.getExtraX(i));
+				dos.writeInt(t.getExtraY(i));
+				dos.writeByte(t.getExtraToken(i));
+			}
+		}
+	}
+
+	// Converte um .txt (ou todos os .txt de uma pasta) para .bin
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Uso: BinaryRoomFile <sala.txt | pasta> [saida.bin]");
+			return;
+		}
+		File in = new File(args[0]);
+		if (in.isDirectory()) {
+			File[] files = in.listFiles();
+			if (files == null)
+				return;
+			for (File f : files)
+				if (f.isFile() && f.getName().endsWith(".txt"))
+					convert(f, binaryFileFor(f));
+		} else {
+			convert(in, args.length > 1 ? new File(args[1]) : binaryFileFor(in));
+		}
+	}
+
+	private static void convert(File txt, File bin) throws IOException {
+		write(RoomTemplate.load(txt), bin);
+		System.out.println(txt.getPath() + " -> " + bin.getPath());
+	}
+
+	public static File binaryFileFor(File txt) {
+		return new File(txt.getParentFile(), baseName(txt.getName()) + EXTENSION);
+	}
+
+	// room0.bin -> room0.txt
+	static String textNameFor(String name) {
+		return baseName(name) + ".txt";
+	}
+
+	private static String baseName(String name) {
+		int dot = name.lastIndexOf('.');
+		return (dot >= 0) ? name.substring(0, dot) : name;
+	}
+}
@@ -0,0 +1,209 @@
+package pt.iscte.poo.game;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import objects.Anchor;
+import objects.Cup;
+import objects.GameCharacter;
+import objects.GameObject;
+import objects.HoleWall;
+import objects.Rock;
+import objects.SteelH;
+import objects.SteelVertical;
+import objects.Wall;
+import pt.iscte.poo.utils.Point2D;
+
+/**
+ * Deteção de becos sem saída, calculada uma vez por sala a partir das peças
+ * que nunca mudam (paredes, aço e paredes com buraco).
+ * <p>
+ * Para cada peixe guarda as células de onde ainda é possível chegar à borda
+ * da sala (e sair). Um estado está perdido se um peixe em jogo está
+ * numa célula sem saída, contando também com os objetos pesados que ficaram
+ * presos de vez (ex: uma pedra pousada no chão e encostada a uma parede).
+ * <p>
+ * A análise é conservadora: só diz "perdido" quando é mesmo impossível.
+ * Enquanto houver bombas na sala nada é dado como perdido, porque uma
+ * explosão pode abrir paredes; depois de rebentarem todas, {@link #refresh}
+ * devolve a análise das paredes que sobraram (calculada uma vez por cada
+ * disposição das paredes).
+ */
+public final class DeadlockAnalysis {
+
+	private static final byte FREE = 0;
+	private static final byte WALL = 1; // ninguém passa
+	private static final byte HOLE = 2; // só o peixe pequeno passa
+
+	private final int width;
+	private final int height;
+	private final boolean enabled;
+	private final byte[] fixed;
+	private final boolean[] bigEscape;
+	private final boolean[] smallEscape;
+
+	// Análises depois de rebentarem as bombas, por disposição das paredes
+	// (partilhado pelas threads do ParallelSolver)
+	private final Map<String, DeadlockAnalysis> afterBombs = new ConcurrentHashMap<>();
+
+	private DeadlockAnalysis(int width, int height, byte[] fixed, boolean enabled) {
+		this.width = width;
+		this.height = height;
+		this.fixed = fixed;
+		this.enabled = enabled;
+		this.bigEscape = escapeMap(true, null);
+		this.smallEscape = escapeMap(false, null);
+	}
+
+	public static DeadlockAnalysis of(Room room) {
+		byte[] fixed = new byte[room.getWidth() * room.getHeight()];
+		readFixed(room, fixed);
+		return new DeadlockAnalysis(room.getWidth(), room.getHeight(), fixed, room.bombCount() == 0);
+	}
+
+	// Preenche as peças fixas da sala
+	private static void readFixed(Room room, byte[] fixed) {
+		int width = room.getWidth(), height = room.getHeight();
+		for (GameObject o : room.getGameObjects()) {
+			Point2D p = o.getPosition();
+			if (p == null || p.getX() < 0 || p.getX() >= width || p.getY() < 0 || p.getY() >= height)
+				continue;
+			int i = p.getY() * width + p.getX();
+			if (o instanceof Wall || o instanceof SteelH || o instanceof SteelVertical)
+				fixed[i] = WALL;
+			else if (o instanceof HoleWall && fixed[i] == FREE)
+				fixed[i] = HOLE;
+		}
+	}
+
+	/**
+	 * A análise a usar neste estado da sala: esta, enquanto houver bombas (ou
+	 * se a sala nunca as teve); quando já rebentaram todas, a das paredes que
+	 * sobraram. Quem guarda a análise deve trocá-la pelo resultado, para só
+	 * voltar a ler a sala se ela recuar para antes das explosões (undo).
+	 */
+	public DeadlockAnalysis refresh(Room room) {
+		if (enabled || room.bombCount() > 0)
+			return this;
+		byte[] now = new byte[width * height];
+		readFixed(room, now);
+		return afterBombs.computeIfAbsent(new String(now, StandardCharsets.ISO_8859_1),
+				k -> new DeadlockAnalysis(width, height, now, true));
+	}
+
+	// false se a sala tinha bombas: as peças fixas podem mudar
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	// Só com as peças fixas: o peixe consegue sair a partir desta célula?
+	public boolean canEscape(boolean bigFish, Point2D p) {
+		if (!enabled || p == null || !inGrid(p.getX(), p.getY()))
+			return true;
+		return (bigFish ? bigEscape : smallEscape)[p.getY() * width + p.getX()];
+	}
+
+	// true se algum peixe em jogo já não consegue sair, neste estado da sala
+	// (com bombas na sala é sempre false: ver refresh)
+	public boolean isDead(Room room) {
+		if (!enabled)
+			return false;
+		boolean[] frozen = frozenObjects(room);
+		if (frozen == null)
+			return !canLeave(room.getBigFish(), bigEscape) || !canLeave(room.getSmallFish(), smallEscape);
+		return !canLeave(room.getBigFish(), escapeMap(true, frozen))
+				|| !canLeave(room.getSmallFish(), escapeMap(false, frozen));
+	}
+
+	private boolean canLeave(GameCharacter fish, boolean[] escape) {
+		if (fish == null || !fish.isAlive() || fish.isOut())
+			return true;
+		Point2D p = fish.getPosition();
+		if (p == null || !inGrid(p.getX(), p.getY()))
+			return true;
+		return escape[p.getY() * width + p.getX()];
+	}
+
+	// Células de onde se chega à borda: BFS a partir das células livres da borda
+	private boolean[] escapeMap(boolean bigFish, boolean[] frozen) {
+		boolean[] reach = new boolean[width * height];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++) {
+				int i = y * width + x;
+				if ((x == 0 || y == 0 || x == width - 1 || y == height - 1) && passable(i, bigFish, frozen)) {
+					reach[i] = true;
+					queue.add(i);
+				}
+			}
+		while (!queue.isEmpty()) {
+			int i = queue.poll();
+			int x = i % width, y = i / width;
+			int[][] next = { { x - 1, y }, { x + 1, y }, { x, y - 1 }, { x, y + 1 } };
+			for (int[] n : next) {
+				if (!inGrid(n[0], n[1]))
+					continue;
+				int j = n[1] * width + n[0];
+				if (!reach[j] && passable(j, bigFish, frozen)) {
+					reach[j] = true;
+					queue.add(j);
+				}
+			}
+		}
+		return reach;
+	}
+
+	private boolean passable(int i, boolean bigFish, boolean[] frozen) {
+		if (frozen != null && frozen[i])
+			return false;
+		return fixed[i] == FREE || (fixed[i] == HOLE && !bigFish);
+	}
+
+	// Objetos que nunca mais se mexem: pousados em algo fixo (não caem nem se
+	// empurram na vertical) e com algo fixo de um dos lados (para empurrar na
+	// horizontal é preciso ter livres os dois lados). null se não houver nenhum.
+	private boolean[] frozenObjects(Room room) {
+		List<Point2D> heavy = new ArrayList<>();
+		for (GameObject o : room.getGameObjects())
+			if (o instanceof Rock || o instanceof Anchor || o instanceof Cup) {
+				Point2D p = o.getPosition();
+				if (p != null && inGrid(p.getX(), p.getY()))
+					heavy.add(p);
+			}
+
+		boolean[] frozen = null;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Point2D p : heavy) {
+				int x = p.getX(), y = p.getY();
+				if (frozen != null && frozen[y * width + x])
+					continue;
+				if (solid(x, y + 1, frozen) && (solid(x - 1, y, frozen) || solid(x + 1, y, frozen))) {
+					if (frozen == null)
+						frozen = new boolean[width * height];
+					frozen[y * width + x] = true;
+					changed = true;
+				}
+			}
+		}
+		return frozen;
+	}
+
+	// Fora da grelha não se sabe: não conta como apoio. Uma parede com buraco
+	// também não: o peixe pequeno pode entrar nela e empurrar daí o objeto.
+	private boolean solid(int x, int y, boolean[] frozen) {
+		if (!inGrid(x, y))
+			return false;
+		int i = y * width + x;
+		return fixed[i] == WALL || (frozen != null && frozen[i]);
+	}
+
+	private boolean inGrid(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+}
@@ -0,0 +1,65 @@
+package pt.iscte.poo.game;
+
+import objects.GameObject;
+import pt.iscte.poo.gui.Display;
+import pt.iscte.poo.utils.Point2D;
+
+/**
+ * Mantém as imagens de um Display iguais aos objetos de uma sala, aplicando
+ * só as diferenças que a sala anuncia. A reconstrução completa (limpar e
+ * voltar a pôr tudo) fica para quando se entra numa sala.
+ */
+public class DisplaySync implements RoomListener {
+
+	private final Display display;
+
+	public DisplaySync(Display display) {
+		this.display = display;
+	}
+
+	public Display getDisplay() {
+		return display;
+	}
+
+	@Override
+	public void objectAdded(Room room, GameObject obj) {
+		try {
+			display.addImage(obj);
+		} catch (Exception ignored) {
+		}
+	}
+
+	@Override
+	public void objectRemoved(Room room, GameObject obj) {
+		try {
+			display.removeImage(obj);
+		} catch (Exception ignored) {
+		}
+	}
+
+	// A janela só volta a desenhar as células que mudaram: tem de saber quais
+	@Override
+	public void objectMoved(Room room, GameObject obj, Point2D from, Point2D to) {
+		try {
+			display.imageMoved(obj, from, to);
+		} catch (Exception ignored) {
+		}
+	}
+
+	@Override
+	public void objectChanged(Room room, GameObject obj) {
+		try {
+			display.imageChanged(obj);
+		} catch (Exception ignored) {
+		}
+	}
+
+	@Override
+	public void roomReset(Room room) {
+		try {
+			display.clearImages();
+			display.addImages(room.getObjects());
+		} catch (Exception ignored) {
+		}
+	}
+}
@@ -1,13 +1,15 @@
 package pt.iscte.poo.game;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.swing.JOptionPane;
-import javax.swing.SwingUtilities;
-
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.awt.event.KeyEvent;
 
 import objects.SmallFish;
@@ -16,7 +18,11 @@ import objects.GameCharacter;
 import objects.GameObject;
 import objects.Krab;
 
+import pt.iscte.poo.gui.Display;
 import pt.iscte.poo.gui.ImageGUI;
+import pt.iscte.poo.gui.ImageTile;
+import pt.iscte.poo.gui.KeyInput;
+import pt.iscte.poo.gui.Ticker;
 import pt.iscte.poo.observer.Observed;
 import pt.iscte.poo.observer.Observer;
 import pt.iscte.poo.utils.Direction;
@@ -26,46 +32,115 @@ import pt.iscte.poo.utils.Vector2D;
 import highscores.HighscoreManager;
 import highscores.Highscore;
 
+import replay.ReplayRecorder;
+import solver.HintEngine;
+
 public class GameEngine implements Observer {
 
 	private static GameEngine INSTANCE = null;
 
 	public static GameEngine getInstance() {
-		if (INSTANCE == null)
-			INSTANCE = new GameEngine();
+		if (INSTANCE == null) {
+			INSTANCE = new GameEngine(ImageGUI.getInstance(), new HighscoreManager());
+			INSTANCE.startRecording();
+		}
 		return INSTANCE;
 	}
 
+	public static final File DEFAULT_ROOMS_DIR = new File("./rooms");
+
+	private final Display display;
+	private final File roomsDir;
 	private final Map<String, Room> rooms;
 	private Room currentRoom;
 	private int lastTickProcessed = 0;
+	// Ticks da GUI que o motor deixou cair (ver engineTick) e pedido para deixar
+	// cair os que se acumularam durante um diálogo
+	private int droppedTicks = 0;
+	private boolean resyncClock = false;
 	private GameCharacter controlled;
 
 	// Contagem
-	private HighscoreManager highscoreManager = new HighscoreManager();
+	private final HighscoreManager highscoreManager; // null = não guarda highscores
 	private long gameStartTime = -1L; // tempo total desde início do jogo
 	private int totalMoves = 0; // movimentos acumulados da run inteira
+	private int deaths = 0; // vezes que um peixe morreu (e o nível recomeçou)
+	private int levelsCompleted = 0;
 	private boolean gameEnded = false; // evita pedido infinito de nome
 
-	private GameEngine() {
+	// Semente da sessão: cada sala recebe uma semente derivada desta ao entrar em jogo
+	private final long seed;
+	private final Random roomSeeds;
+	private ReplayRecorder recorder; // null = não grava
+
+	// Thread do jogo, quando há janela (ver update)
+	private GameLoop loop;
+
+	// Becos sem saída da sala atual: a calculada ao entrar na sala e a que está
+	// em uso (trocada uma vez quando rebenta a última bomba, ver isStuck)
+	private DeadlockAnalysis roomDeadlocks;
+	private DeadlockAnalysis deadlocks;
+	// Resposta de isStuck para o estado stuckHash da sala stuckRoom: só se volta
+	// a analisar quando o estado muda (os ticks sem movimento não custam nada)
+	private Room stuckRoom;
+	private long stuckHash;
+	private boolean stuck;
+
+	// Dicas (tecla H): a pesquisa corre noutra thread e a resposta aparece na barra de estado
+	private final HintEngine hints = new HintEngine();
+	private volatile String statusLine = "";
+	private volatile String hint; // última dica, válida enquanto a sala estiver em hintState
+	private volatile long hintState;
+
+	// Velocidade do tempo (tecla F): 1 = normal
+	private double speed = 1.0;
+
+	// O próximo nível é lido e construído numa thread à parte enquanto se joga o atual
+	private static final ExecutorService ROOM_LOADER = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "room-loader");
+		t.setDaemon(true);
+		return t;
+	});
+	private String prefetchedName;
+	private Future<PreparedRoom> prefetched;
+	private boolean prefetchEnabled;
+
+	// Motor sem janela nem highscores (simulações, testes)
+	public GameEngine(Display display) {
+		this(display, null);
+	}
+
+	public GameEngine(Display display, HighscoreManager highscoreManager) {
+		this(display, highscoreManager, System.nanoTime(), "room0.txt");
+	}
+
+	// Com a mesma semente, sala inicial e entradas, o jogo repete-se exatamente (ver replay)
+	public GameEngine(Display display, HighscoreManager highscoreManager, long seed, String startRoom) {
+		this(display, highscoreManager, seed, DEFAULT_ROOMS_DIR, startRoom);
+	}
+
+	public GameEngine(Display display, HighscoreManager highscoreManager, long seed, File roomsDir,
+			String startRoom) {
+		this(display, highscoreManager, seed, roomsDir, startRoom, true);
+	}
+
+	// prefetch = false: só lê cada sala quando se chega lá (ex: runs em lote, que
+	// acabam no fim do primeiro nível)
+	public GameEngine(Display display, HighscoreManager highscoreManager, long seed, File roomsDir,
+			String startRoom, boolean prefetch) {
+		this.display = display;
+		this.prefetchEnabled = prefetch;
+		this.highscoreManager = highscoreManager;
+		this.seed = seed;
+		this.roomSeeds = new Random(seed);
+		this.roomsDir = roomsDir;
 		rooms = new HashMap<>();
-		loadGame();
+		loadGame(startRoom);
 
-		currentRoom = rooms.get("room0.txt");
+		currentRoom = rooms.get(startRoom);
 		if (currentRoom == null && !rooms.isEmpty())
 			currentRoom = rooms.values().iterator().next();
-
-		// Associar room aos singletons
-		try {
-			if (SmallFish.getInstance() != null)
-				SmallFish.getInstance().setRoom(currentRoom);
-		} catch (Throwable ignored) {
-		}
-		try {
-			if (BigFish.getInstance() != null)
-				BigFish.getInstance().setRoom(currentRoom);
-		} catch (Throwable ignored) {
-		}
+		enterRoom(currentRoom);
 
 		pickInitialControlled();
 
@@ -76,28 +151,115 @@ public class GameEngine implements Observer {
 
 		updateStatusMessage();
 		updateGUI();
+		prefetchNextLevel();
 	}
 
-	private void loadGame() {
-		File folder = new File("./rooms");
-		File[] files = (folder.exists()) ? folder.listFiles() : null;
+	// Só se lê a sala inicial; as seguintes são lidas quando se chega lá (ver loadNextLevel)
+	private void loadGame(String startRoom) {
+		Room start = roomFile(startRoom).exists() ? Room.readRoom(roomFile(startRoom), this) : null;
+		if (start != null) {
+			rooms.put(startRoom, start);
+			return;
+		}
+
+		// sala inicial não existe: usa a primeira da pasta
+		File[] files = (roomsDir.exists()) ? roomsDir.listFiles() : null;
 		if (files == null)
 			return;
+		Arrays.sort(files);
 		for (File f : files) {
 			if (!f.isFile() || !f.getName().endsWith(".txt"))
 				continue;
-			Room r = Room.readRoom(f, this);
-			if (r != null)
+			Room r = Room.readRoom(roomFile(f.getName()), this);
+			if (r != null) {
 				rooms.put(f.getName(), r);
+				return;
+			}
 		}
 	}
 
+	public Display getDisplay() {
+		return display;
+	}
+
+	// Chamado pelas threads da GUI: só deixa mensagens para a thread do jogo
 	@Override
 	public void update(Observed source) {
+		if (!(source instanceof ImageGUI))
+			return;
+		ImageGUI gui = (ImageGUI) source;
+		GameLoop loop = loop();
+		if (gui.wasWindowClosed()) {
+			// a janela fecha a JVM logo a seguir: esperar (pouco) que a gravação acabe
+			loop.postAndWait(this::saveReplay, 2000);
+			return;
+		}
+		// todas as teclas desde a última atualização, pela ordem em que foram carregadas
+		synchronized (loop) {
+			KeyInput in;
+			while ((in = gui.pollKey()) != null)
+				loop.postKey(in.getKeyCode(), in.getTick());
+			loop.postTick(gui.getTicks());
+		}
+	}
+
+	// Criado na primeira mensagem da GUI; sem GUI o motor é usado diretamente (step)
+	private synchronized GameLoop loop() {
+		if (loop == null) {
+			loop = new GameLoop(this);
+			loop.start();
+		}
+		return loop;
+	}
+
+	// Avança o tempo até ao tick guiTick da GUI (se ainda não lá chegou)
+	void advanceTo(int guiTick) {
+		int t = engineTick(guiTick);
+		if (t > lastTickProcessed)
+			step(null, t);
+	}
+
+	// Tecla carregada no tick guiTick da GUI
+	void keyAt(int key, int guiTick) {
+		step(key, engineTick(guiTick));
+	}
+
+	// Tick da GUI -> tempo do motor. O relógio não pára enquanto um diálogo
+	// bloqueia esta thread: os ticks desse tempo são deitados fora, e se o motor
+	// ficar para trás por outra razão corre no máximo Ticker.DEFAULT_MAX_CATCH_UP
+	// seguidos, em vez de aplicar a gravidade toda de uma vez. A gravação usa o
+	// tempo do motor, por isso os replays não dependem disto.
+	private int engineTick(int guiTick) {
+		int t = guiTick - droppedTicks;
+		int behind = t - lastTickProcessed;
+		int keep = resyncClock ? 0 : Ticker.DEFAULT_MAX_CATCH_UP;
+		resyncClock = false;
+		if (behind > keep) {
+			droppedTicks += behind - keep;
+			t = lastTickProcessed + keep;
+		}
+		return t;
+	}
+
+	// Entrada sem GUI: uma tecla, sem avançar o tempo
+	public void keyPressed(int key) {
+		step(key, lastTickProcessed);
+	}
+
+	// Entrada sem GUI: avança um tick
+	public void tick() {
+		step(null, lastTickProcessed + 1);
+	}
+
+	// Uma entrada do motor: tecla (ou null) e o tick até onde o tempo avança
+	public void step(Integer key, int t) {
+		if (recorder != null)
+			recorder.record(t, key);
+
 		// Se jogo terminou → só aceitar 'R', e mais nada
 		if (gameEnded) {
-			if (ImageGUI.getInstance().wasKeyPressed()) {
-				int k = ImageGUI.getInstance().keyPressed();
+			if (key != null) {
+				int k = key;
 				if (k == KeyEvent.VK_R) {
 					restartLevel();
 					gameEnded = false;
@@ -107,8 +269,8 @@ public class GameEngine implements Observer {
 		}
 
 		//Utilizador
-		if (ImageGUI.getInstance().wasKeyPressed()) {
-			int k = ImageGUI.getInstance().keyPressed();
+		if (key != null) {
+			int k = key;
 
 			if (k == KeyEvent.VK_SPACE) {
 				toggleControlled();
@@ -117,12 +279,29 @@ public class GameEngine implements Observer {
 			} else if (k == KeyEvent.VK_R) {
 				restartLevel(); // NÃO reinicia contadores!
 
+			} else if (k == KeyEvent.VK_F) {
+				cycleSpeed();
+				updateStatusMessage();
+
+			} else if (k == KeyEvent.VK_H) {
+				requestHint();
+
+			} else if ((k == KeyEvent.VK_Z || k == KeyEvent.VK_Y) && currentRoom != null) {
+				boolean changed = k == KeyEvent.VK_Z ? currentRoom.undo() : currentRoom.redo();
+				if (changed) {
+					deadlocks = roomDeadlocks; // o undo pode trazer bombas e paredes de volta
+					ensureControlledStillValid();
+					updateStatusMessage();
+				}
+
 			} else {
 				try {
 					Vector2D delta = Direction.directionFor(k).asVector();
 					if (controlled != null && !controlled.isOut() && controlled.getRoom() != null
 							&& controlled.isAlive()) {
 
+						// nova jogada: tudo o que acontecer até à próxima fica no mesmo grupo do undo
+						currentRoom.getJournal().beginMove();
 						Point2D oldPos = clonePosition(controlled.getPosition());
 						controlled.move(delta);
 						Point2D newPos = clonePosition(controlled.getPosition());
@@ -134,8 +313,8 @@ public class GameEngine implements Observer {
 						notifyCrabsOnPlayerMove();
 					}
 
-					checkExit(BigFish.getInstance());
-					checkExit(SmallFish.getInstance());
+					checkExit(bigFish());
+					checkExit(smallFish());
 					updateStatusMessage();
 
 				} catch (Exception ignored) {
@@ -144,7 +323,6 @@ public class GameEngine implements Observer {
 		}
 
 		//Gravidade/Ticks
-		int t = ImageGUI.getInstance().getTicks();
 		while (lastTickProcessed < t)
 			processTick();
 
@@ -152,19 +330,19 @@ public class GameEngine implements Observer {
 
 		//Atualiza GUI
 		try {
-			ImageGUI.getInstance().update();
+			display.update();
 		} catch (Exception ignored) {
 		}
 
-		checkExit(BigFish.getInstance());
-		checkExit(SmallFish.getInstance());
+		checkExit(bigFish());
+		checkExit(smallFish());
 
 		ensureControlledStillValid();
 		updateStatusMessage();
 
 		//GameOver (Morte)
-		SmallFish sf = SmallFish.getInstance();
-		BigFish bf = BigFish.getInstance();
+		SmallFish sf = smallFish();
+		BigFish bf = bigFish();
 		boolean smallDead = sf != null && !sf.isAlive();
 		boolean bigDead = bf != null && !bf.isAlive();
 
@@ -177,17 +355,14 @@ public class GameEngine implements Observer {
 			else
 				who = "BigFish morreu!";
 
+			deaths++;
 			final String msg = "GAME OVER!\n" + who;
 
 			try {
-				SwingUtilities.invokeAndWait(
-						() -> JOptionPane.showMessageDialog(null, msg, "Message", JOptionPane.INFORMATION_MESSAGE));
-			} catch (Exception e) {
-				try {
-					JOptionPane.showMessageDialog(null, msg, "Message", JOptionPane.INFORMATION_MESSAGE);
-				} catch (Exception ignored) {
-				}
+				display.showMessage("Message", msg);
+			} catch (Exception ignored) {
 			}
+			resyncClock = true;
 
 			restartLevel();
 			return;
@@ -202,24 +377,25 @@ public class GameEngine implements Observer {
 			currentRoom.applyGravity();
 	}
 
+	// Reconstrução completa das imagens: só ao entrar numa sala; depois a sala
+	// avisa a janela de cada mudança
 	public void updateGUI() {
 		if (currentRoom != null) {
 			try {
-				ImageGUI.getInstance().clearImages();
-				ImageGUI.getInstance().addImages(currentRoom.getObjects());
+				currentRoom.redraw();
 			} catch (Exception ignored) {
 			}
 		} else {
 			try {
-				ImageGUI.getInstance().clearImages();
+				display.clearImages();
 			} catch (Exception ignored) {
 			}
 		}
 	}
 
 	private void toggleControlled() {
-		GameCharacter big = BigFish.getInstance();
-		GameCharacter small = SmallFish.getInstance();
+		GameCharacter big = bigFish();
+		GameCharacter small = smallFish();
 
 		boolean bigA = big != null && big.isAlive() && !big.isOut();
 		boolean smallA = small != null && small.isAlive() && !small.isOut();
@@ -250,15 +426,17 @@ public class GameEngine implements Observer {
 			controlled = small;
 	}
 
+	// Também depois de trocar de sala: o peixe controlado tem de ser um dos da sala atual
 	private void ensureControlledStillValid() {
-		if (controlled == null || !controlled.isAlive() || controlled.isOut()) {
+		if (controlled == null || !controlled.isAlive() || controlled.isOut()
+				|| (controlled != bigFish() && controlled != smallFish())) {
 			pickInitialControlled();
 		}
 	}
 
 	private void pickInitialControlled() {
-		GameCharacter big = BigFish.getInstance();
-		GameCharacter small = SmallFish.getInstance();
+		GameCharacter big = bigFish();
+		GameCharacter small = smallFish();
 
 		if (big != null && big.isAlive() && !big.isOut())
 			controlled = big;
@@ -271,7 +449,49 @@ public class GameEngine implements Observer {
 	private void updateStatusMessage() {
 		try {
 			String name = (controlled != null) ? controlled.getName() : "none";
-			ImageGUI.getInstance().setStatusMessage("Controlling: " + name);
+			String msg = "Controlling: " + name;
+			if (isStuck())
+				msg += " | You're stuck, press R to restart";
+			if (speed != 1.0)
+				msg += " | Speed: " + (speed < 1 ? String.valueOf(speed) : String.valueOf((int) speed)) + "x";
+			statusLine = msg;
+			String h = hint;
+			if (h != null && currentRoom != null && currentRoom.stateHash() == hintState)
+				msg += " | Hint: " + h;
+			display.setStatusMessage(msg);
+		} catch (Exception ignored) {
+		}
+	}
+
+	// Acelera / abranda o relógio da janela (sem janela não há relógio a mudar)
+	private void cycleSpeed() {
+		if (display instanceof ImageGUI)
+			speed = ((ImageGUI) display).cycleTimeScale();
+	}
+
+	// Não bloqueia: a dica chega mais tarde (ou logo, se já estiver em cache)
+	private void requestHint() {
+		if (currentRoom == null || controlled == null)
+			return;
+		Room room = currentRoom;
+		long state = room.stateHash();
+		hints.request(room, controlled == bigFish(), text -> {
+			GameLoop l = loop;
+			if (l != null && !l.isLoopThread())
+				l.post(() -> showHint(room, state, text));
+			else
+				showHint(room, state, text);
+		});
+	}
+
+	// Na thread do jogo: a dica só vale se a sala ainda estiver no estado pedido
+	private void showHint(Room room, long state, String text) {
+		if (currentRoom != room || room.stateHash() != state)
+			return;
+		hint = text;
+		hintState = state;
+		try {
+			display.setStatusMessage(statusLine + " | Hint: " + text);
 		} catch (Exception ignored) {
 		}
 	}
@@ -283,7 +503,7 @@ public class GameEngine implements Observer {
 		if (fish.getRoom() == null || fish.getPosition() == null) {
 			fish.setOut(true);
 			try {
-				ImageGUI.getInstance().removeImage(fish);
+				display.removeImage(fish);
 			} catch (Exception ignored) {
 			}
 			return;
@@ -295,79 +515,118 @@ public class GameEngine implements Observer {
 		if (x < 0 || x >= 10 || y < 0 || y >= 10) {
 			fish.setOut(true);
 			try {
-				ImageGUI.getInstance().removeImage(fish);
+				display.removeImage(fish);
 			} catch (Exception ignored) {
 			}
 		}
 	}
 
 	private void checkLevelCompletion() {
-		BigFish big = BigFish.getInstance();
-		SmallFish small = SmallFish.getInstance();
+		BigFish big = bigFish();
+		SmallFish small = smallFish();
 
 		if ((big == null || big.isOut()) && (small == null || small.isOut())) {
+			levelsCompleted++;
 			loadNextLevel();
 		}
 	}
 
 	private void loadNextLevel() {
-		int currentLevel = 0;
+		String nextName = nextLevelName();
 
-		try {
-			String digits = currentRoom.getName().replaceAll("\\D+", "");
-			if (!digits.isEmpty())
-				currentLevel = Integer.parseInt(digits);
-		} catch (Exception ignored) {
+		// normalmente já está pronto (prefetch); senão lê-se agora
+		PreparedRoom next = takePrefetched(nextName);
+		if (next == null) {
+			File f = roomFile(nextName);
+			next = PreparedRoom.of(f.exists() ? Room.readRoom(f, this) : rooms.get(nextName));
 		}
 
-		int nextLevel = currentLevel + 1;
-		String nextName = "room" + nextLevel + ".txt";
-
-		BigFish.resetInstance();
-		SmallFish.resetInstance();
-
-		File f = new File("./rooms/" + nextName);
-		Room next = f.exists() ? Room.readRoom(f, this) : rooms.get(nextName);
-
 		//Fim do Jogo
 		if (next == null) {
 			onGameEnd();
 			return;
 		}
 
-		currentRoom = next;
+		currentRoom = next.room;
+		enterRoom(currentRoom);
 
-		// reconstruir GUI e singletons
+		// reconstruir GUI (lista de imagens já preparada)
 		try {
-			ImageGUI.getInstance().clearImages();
-			ImageGUI.getInstance().addImages(currentRoom.getObjects());
-			ImageGUI.getInstance().update();
+			display.clearImages();
+			display.addImages(next.tiles);
+			display.update();
 		} catch (Exception ignored) {
 		}
 
+		ensureControlledStillValid();
+		updateStatusMessage();
+		prefetchNextLevel();
+	}
+
+	private String nextLevelName() {
+		int currentLevel = 0;
+
 		try {
-			if (currentRoom.getBigFish() != null)
-				BigFish.getInstance(currentRoom.getBigFish().getPosition(), currentRoom);
-		} catch (Throwable ignored) {
+			String digits = currentRoom.getName().replaceAll("\\D+", "");
+			if (!digits.isEmpty())
+				currentLevel = Integer.parseInt(digits);
+		} catch (Exception ignored) {
 		}
+
+		int nextLevel = currentLevel + 1;
+		return "room" + nextLevel + ".txt";
+	}
+
+	// Começa a preparar o nível seguinte ao atual
+	private void prefetchNextLevel() {
+		if (currentRoom == null || !prefetchEnabled)
+			return;
+		final String nextName = nextLevelName();
+		if (nextName.equals(prefetchedName))
+			return;
+
+		prefetchedName = nextName;
+		prefetched = ROOM_LOADER.submit(() -> {
+			File f = roomFile(nextName);
+			return f.exists() ? PreparedRoom.of(Room.readRoom(f, this)) : null;
+		});
+	}
+
+	private PreparedRoom takePrefetched(String name) {
+		Future<PreparedRoom> pending = prefetched;
+		boolean matches = name.equals(prefetchedName);
+		prefetched = null;
+		prefetchedName = null;
+		if (pending == null || !matches)
+			return null;
 		try {
-			if (currentRoom.getSmallFish() != null)
-				SmallFish.getInstance(currentRoom.getSmallFish().getPosition(), currentRoom);
-		} catch (Throwable ignored) {
+			return pending.get();
+		} catch (Exception e) {
+			return null;
 		}
+	}
 
-		ensureControlledStillValid();
-		updateStatusMessage();
+	// Sala pronta a entrar em jogo, com a lista das suas imagens já copiada
+	// (na thread de leitura, não na do jogo)
+	private static class PreparedRoom {
+		private final Room room;
+		private final List<ImageTile> tiles;
+
+		private PreparedRoom(Room room) {
+			this.room = room;
+			this.tiles = room.getObjects();
+		}
+
+		private static PreparedRoom of(Room room) {
+			return (room != null) ? new PreparedRoom(room) : null;
+		}
 	}
 
 	// Reiniciar o nível NÃO reinicia tempo nem movimentos!
 	private void restartLevel() {
 		String roomName = currentRoom.getName();
 
-		BigFish.resetInstance();
-		SmallFish.resetInstance();
-
-		File f = new File("./rooms/" + roomName);
+		File f = roomFile(roomName);
 		Room r = (f.exists() ? Room.readRoom(f, this) : null);
 
 		if (r == null)
@@ -375,11 +634,10 @@ public class GameEngine implements Observer {
 
 		rooms.put(roomName, r);
 		currentRoom = r;
+		enterRoom(currentRoom);
 
 		try {
-			ImageGUI.getInstance().clearImages();
-			ImageGUI.getInstance().addImages(currentRoom.getObjects());
-			ImageGUI.getInstance().update();
+			currentRoom.redraw();
 		} catch (Exception ignored) {
 		}
 
@@ -387,12 +645,69 @@ public class GameEngine implements Observer {
 		updateStatusMessage();
 	}
 
+	public int getDeaths() {
+		return deaths;
+	}
+
+	public int getLevelsCompleted() {
+		return levelsCompleted;
+	}
+
+	// Desliga a leitura antecipada do nível seguinte (ex: simulações que param no fim do nível)
+	public void disablePrefetch() {
+		prefetchEnabled = false;
+		if (prefetched != null)
+			prefetched.cancel(false);
+		prefetched = null;
+		prefetchedName = null;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	//Replay
+	// Passa a gravar todas as entradas a partir daqui
+	public void startRecording() {
+		String start = (currentRoom != null) ? currentRoom.getName() : "room0.txt";
+		recorder = new ReplayRecorder(seed, start);
+	}
+
+	public ReplayRecorder getRecorder() {
+		return recorder;
+	}
+
+	public void saveReplay() {
+		if (recorder == null)
+			return;
+		if (currentRoom != null)
+			recorder.setFinalHash(currentRoom.stateHash());
+		File f = recorder.save();
+		if (f != null)
+			System.out.println("Replay gravado em " + f.getPath());
+	}
+
+	public boolean isGameEnded() {
+		return gameEnded;
+	}
+
+	public int getTotalMoves() {
+		return totalMoves;
+	}
+
+	public int getTicks() {
+		return lastTickProcessed;
+	}
+
 	public Room getCurrentRoom() {
 		return currentRoom;
 	}
 
 	public void setCurrentRoom(Room r) {
+		if (r != null)
+			r.setDisplay(display);
 		this.currentRoom = r;
+		enterRoom(r);
 		ensureControlledStillValid();
 		updateGUI();
 	}
@@ -409,10 +724,7 @@ public class GameEngine implements Observer {
 				}
 			}
 		}
-		try {
-			updateGUI();
-		} catch (Exception ignored) {
-		}
+		// a janela acompanha os caranguejos pelos eventos da sala (DisplaySync)
 	}
 
 	//HighScore
@@ -423,23 +735,24 @@ public class GameEngine implements Observer {
 
 		long elapsed = System.currentTimeMillis() - gameStartTime;
 
-		String playerName = null;
-		try {
-			final String[] holder = new String[1];
-			SwingUtilities.invokeAndWait(() -> holder[0] = JOptionPane.showInputDialog(null, "Nome:",
-					"Guardar Highscore", JOptionPane.PLAIN_MESSAGE));
-			playerName = holder[0];
-		} catch (Exception ignored) {
-		}
+		if (highscoreManager != null) {
+			String playerName = null;
+			try {
+				playerName = display.showInputDialog("Guardar Highscore", "Nome:");
+			} catch (Exception ignored) {
+			}
+			resyncClock = true;
 
-		if (playerName == null || playerName.trim().isEmpty())
-			playerName = "Jogador";
+			if (playerName == null || playerName.trim().isEmpty())
+				playerName = "Jogador";
 
-		highscoreManager.addScore(playerName, elapsed, totalMoves);
+			highscoreManager.addScore(playerName, elapsed, totalMoves);
 
-		showHighscoresPopup();
+			showHighscoresPopup();
+		}
 
 		gameEnded = true;
+		saveReplay();
 	}
 
 	private void showHighscoresPopup() {
@@ -452,14 +765,55 @@ public class GameEngine implements Observer {
 		}
 
 		try {
-			SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, sb.toString(), "Highscores",
-					JOptionPane.INFORMATION_MESSAGE));
+			display.showMessage("Highscores", sb.toString());
 		} catch (Exception ignored) {
 			System.out.println(sb);
 		}
+		resyncClock = true;
 	}
 	
 	//Funções para ajudar
+	// Usa a versão binária da sala (.bin) se existir e não for mais antiga que o .txt
+	private File roomFile(String name) {
+		File f = new File(roomsDir, name);
+		File bin = BinaryRoomFile.binaryFileFor(f);
+		if (bin.exists() && (!f.exists() || bin.lastModified() >= f.lastModified()))
+			return bin;
+		return f;
+	}
+
+	// A sala que entra em jogo recebe a próxima semente da sessão
+	private void enterRoom(Room r) {
+		if (r == null)
+			return;
+		r.setSeed(roomSeeds.nextLong());
+		roomDeadlocks = DeadlockAnalysis.of(r);
+		deadlocks = roomDeadlocks;
+	}
+
+	// Algum peixe ficou sem saída (ex: fechado atrás de uma pedra presa)
+	public boolean isStuck() {
+		if (currentRoom == null || deadlocks == null)
+			return false;
+		long h = currentRoom.stateHash();
+		if (stuckRoom != currentRoom || stuckHash != h) {
+			deadlocks = deadlocks.refresh(currentRoom);
+			stuck = deadlocks.isDead(currentRoom);
+			stuckRoom = currentRoom;
+			stuckHash = h;
+		}
+		return stuck;
+	}
+
+	// Os peixes pertencem à sala atual
+	private BigFish bigFish() {
+		return (currentRoom != null) ? currentRoom.getBigFish() : null;
+	}
+
+	private SmallFish smallFish() {
+		return (currentRoom != null) ? currentRoom.getSmallFish() : null;
+	}
+
 	private boolean positionsEqual(Point2D a, Point2D b) {
 		if (a == null && b == null)
 			return true;
@@ -0,0 +1,126 @@
+package pt.iscte.poo.game;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread do jogo: a única que mexe nas salas e no estado do motor.
+ * <p>
+ * As threads da GUI (teclado, relógio, janela) só deixam mensagens na caixa
+ * de correio, que é tratada por ordem: teclas, ticks e comandos. Assim um
+ * diálogo modal só bloqueia esta thread e nunca o relógio nem a leitura do
+ * teclado, e nenhuma regra do jogo corre com o monitor da ImageGUI.
+ */
+public class GameLoop {
+
+	public enum Kind {
+		KEY, TICK, COMMAND
+	}
+
+	// Uma entrada da caixa de correio
+	static final class Message {
+		final Kind kind;
+		final int key;
+		final int tick;
+		final Runnable command;
+
+		private Message(Kind kind, int key, int tick, Runnable command) {
+			this.kind = kind;
+			this.key = key;
+			this.tick = tick;
+			this.command = command;
+		}
+	}
+
+	private final GameEngine engine;
+	private final BlockingQueue<Message> mailbox = new LinkedBlockingQueue<>();
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	public GameLoop(GameEngine engine) {
+		this.engine = engine;
+		this.thread = new Thread(this::run, "game-loop");
+		this.thread.setDaemon(true);
+	}
+
+	public void start() {
+		thread.start();
+	}
+
+	// Tecla carregada no tick indicado
+	public void postKey(int key, int tick) {
+		mailbox.add(new Message(Kind.KEY, key, tick, null));
+	}
+
+	// O relógio chegou a este tick
+	public void postTick(int tick) {
+		mailbox.add(new Message(Kind.TICK, 0, tick, null));
+	}
+
+	// Qualquer outra coisa que tenha de correr na thread do jogo
+	public void post(Runnable command) {
+		mailbox.add(new Message(Kind.COMMAND, 0, 0, command));
+	}
+
+	// Como post, mas espera (no máximo timeoutMillis) que o comando termine
+	public boolean postAndWait(Runnable command, long timeoutMillis) {
+		if (isLoopThread()) {
+			command.run();
+			return true;
+		}
+		FutureTask<Void> task = new FutureTask<>(command, null);
+		post(task);
+		try {
+			task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	public boolean isLoopThread() {
+		return Thread.currentThread() == thread;
+	}
+
+	public int pending() {
+		return mailbox.size();
+	}
+
+	public void shutdown() {
+		running = false;
+		thread.interrupt();
+	}
+
+	private void run() {
+		while (running) {
+			Message m;
+			try {
+				m = mailbox.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+			try {
+				dispatch(m);
+			} catch (Exception e) {
+				// uma regra com erro não pode parar o jogo
+				System.err.println("Erro na thread do jogo (" + m.kind + ", tick " + m.tick + "): " + e);
+			}
+		}
+	}
+
+	private void dispatch(Message m) {
+		switch (m.kind) {
+		case KEY:
+			engine.keyAt(m.key, m.tick);
+			break;
+		case TICK:
+			engine.advanceTo(m.tick);
+			break;
+		case COMMAND:
+			m.command.run();
+			break;
+		}
+	}
+}
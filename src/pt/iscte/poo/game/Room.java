@@ -3,16 +3,19 @@ package pt.iscte.poo.game;
 import java.io.File;
 import java.util.*;
 
+import pt.iscte.poo.gui.Display;
+import pt.iscte.poo.gui.HeadlessDisplay;
 import pt.iscte.poo.gui.ImageTile;
-import pt.iscte.poo.gui.ImageGUI;
 import pt.iscte.poo.utils.Point2D;
 
+import objects.Bomb;
 import objects.GameObject;
 import objects.Krab;
 import objects.Water;
 import objects.BigFish;
 import objects.SmallFish;
 import objects.Movable;
+import objects.ObjectType;
 import objects.Rock;
 import objects.Crushable;
 import objects.Effect;
@@ -24,79 +27,115 @@ public class Room {
 	private BigFish bigFish;
 	private SmallFish smallFish;
 	private String name;
+	// Onde a sala é desenhada; sem janela por omissão
+	private Display display = new HeadlessDisplay();
+
+	// Índice espacial: uma pilha por célula, ordenada por layer (e ordem de entrada)
+	private final int width;
+	private final int height;
+	private final List<GameObject>[] cells;
+	// Células fora da grelha (ex: pedra empurrada para lá da última coluna)
+	private final Map<Point2D, List<GameObject>> outsideCells = new HashMap<>();
+	private final Map<GameObject, Long> addOrder;
+	private long nextOrder = 0;
+
+	// Hash de Zobrist dos objetos indexados (sem efeitos visuais), atualizado em index/unindex
+	private long hash = 0L;
+
+	// Bombas ainda na sala (contadas ao entrar e sair, para não percorrer os objetos)
+	private int bombs = 0;
+
+	// Gravidade incremental: só os Movables "acordados" são avaliados em cada tick,
+	// pela ordem em que entraram na sala (a mesma ordem da lista objects)
+	private final TreeMap<Long, GameObject> awake = new TreeMap<>();
+	private final List<Effect> effects = new ArrayList<>();
+
+	// Undo/redo
+	private final RoomJournal journal = new RoomJournal();
+
+	// Quem é avisado de cada objeto que entra, sai ou se move (a janela, via DisplaySync)
+	private final List<RoomListener> listeners = new ArrayList<>();
+	private DisplaySync displaySync;
+
+	// Aleatoriedade da sala (caranguejos); o motor define a semente ao entrar na sala
+	private final Random random = new Random(0);
 
 	public Room(String name) {
+		this(name, 0, 0);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" }) // não há arrays de tipos genéricos
+	public Room(String name, int width, int height) {
 		this.name = name;
 		this.objects = new ArrayList<>();
 		this.imageTiles = new ArrayList<>();
+		this.width = width;
+		this.height = height;
+		this.cells = new List[width * height];
+		// água + um objeto por célula, sem ter de crescer durante a leitura
+		this.addOrder = new HashMap<>(Math.max(16, width * height * 3));
 	}
 
 	public static Room readRoom(File f, GameEngine ge) {
-		Room room = new Room(f.getName());
-
-		try (Scanner sc = new Scanner(f)) {
-			int y = 0;
-			while (sc.hasNextLine()) {
-				String line = sc.nextLine();
-				if (line == null)
-					line = "";
-
-				for (int x = 0; x < line.length(); x++) {
-					char c = line.charAt(x);
-					Point2D pos = new Point2D(x, y);
-					
-					// Água sempre adicionada
-					Water w = new Water(pos, room);
-					room.objects.add(w);
-					room.imageTiles.add(w);
-
-					// Criar objeto
-					GameObject go = GameObject.fromChar(c, room, x, y);
-					if (go != null) {
-						room.objects.add(go);
-						room.imageTiles.add(go);
-
-						if (go instanceof BigFish)
-							room.bigFish = (BigFish) go;
-						if (go instanceof SmallFish)
-							room.smallFish = (SmallFish) go;
-					}
-				}
-				y++;
-			}
+		try {
+			return RoomTemplate.load(f).instantiate(ge);
 		} catch (Exception e) {
 			System.err.println("Erro a ler sala: " + e.getMessage());
 			return null;
 		}
+	}
+
+	static Room fromTemplate(RoomTemplate t, GameEngine ge) {
+		Room room = new Room(t.getName(), t.getWidth(), t.getHeight());
+		if (ge != null)
+			room.setDisplay(ge.getDisplay());
+
+		for (int y = 0; y < t.getHeight(); y++) {
+			for (int x = 0; x < t.getWidth(); x++) {
+				char c = t.tokenAt(x, y);
+				if (c == RoomTemplate.NO_CELL)
+					continue;
+				Point2D pos = new Point2D(x, y);
+
+				// Água sempre adicionada
+				room.load(new Water(pos, room));
+
+				// Criar objeto
+				GameObject go = GameObject.fromChar(c, room, x, y);
+				if (go != null) {
+					room.load(go);
+
+					if (go instanceof BigFish)
+						room.bigFish = (BigFish) go;
+					if (go instanceof SmallFish)
+						room.smallFish = (SmallFish) go;
+				}
+			}
+		}
 
+		// Objetos extra (só existem no formato binário)
+		for (int i = 0; i < t.getExtraCount(); i++) {
+			GameObject go = GameObject.fromChar(t.getExtraToken(i), room, t.getExtraX(i), t.getExtraY(i));
+			if (go != null) {
+				room.load(go);
+
+				if (go instanceof BigFish)
+					room.bigFish = (BigFish) go;
+				if (go instanceof SmallFish)
+					room.smallFish = (SmallFish) go;
+			}
+		}
 		return room;
 	}
 
 	//GUI
+	// Pela ordem em que entraram; a ImageGUI já as desenha por layer, não é preciso ordenar
 	public List<ImageTile> getObjects() {
-		List<ImageTile> list = new ArrayList<>(imageTiles);
-
-		list.sort((a, b) -> {
-			int la = (a instanceof GameObject) ? ((GameObject) a).getLayer() : 0;
-			int lb = (b instanceof GameObject) ? ((GameObject) b).getLayer() : 0;
-			if (la != lb)
-				return Integer.compare(la, lb);
-
-			Point2D pa = (a instanceof GameObject) ? ((GameObject) a).getPosition() : null;
-			Point2D pb = (b instanceof GameObject) ? ((GameObject) b).getPosition() : null;
-			if (pa == null || pb == null)
-				return 0;
-
-			if (pa.getY() != pb.getY())
-				return Integer.compare(pa.getY(), pb.getY());
-
-			return Integer.compare(pa.getX(), pb.getX());
-		});
-
-		return list;
+		return new ArrayList<>(imageTiles);
 	}
 	
 	//GETTERS e SETTERS
+	// Pela ordem em que entraram na sala (a ordem da gravidade)
 	public List<GameObject> getGameObjects() {
 		return new ArrayList<>(objects);
 	}
@@ -113,6 +152,74 @@ public class Room {
 		return name;
 	}
 
+	public Display getDisplay() {
+		return display;
+	}
+
+	// As imagens passam a seguir a sala neste display (sem display não há a quem avisar)
+	public void setDisplay(Display display) {
+		this.display = (display != null) ? display : new HeadlessDisplay();
+		if (displaySync != null)
+			removeListener(displaySync);
+		displaySync = (display != null) ? new DisplaySync(display) : null;
+		if (displaySync != null)
+			addListener(displaySync);
+	}
+
+	public void addListener(RoomListener l) {
+		if (l != null && !listeners.contains(l))
+			listeners.add(l);
+	}
+
+	public void removeListener(RoomListener l) {
+		listeners.remove(l);
+	}
+
+	// O objeto mudou de aspeto (ex: o peixe virou-se) sem mudar de célula
+	public void objectChanged(GameObject obj) {
+		if (obj == null || !addOrder.containsKey(obj))
+			return;
+		for (RoomListener l : listeners)
+			l.objectChanged(this, obj);
+	}
+
+	// Reconstrói as imagens da sala de raiz (ex: ao entrar na sala)
+	public void redraw() {
+		for (RoomListener l : listeners)
+			l.roomReset(this);
+		display.update();
+	}
+
+	public Random getRandom() {
+		return random;
+	}
+
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	// Hash de 64 bits do conteúdo (tipo, posição e estado escondido de cada objeto, sem os efeitos visuais).
+	// Salas com o mesmo conteúdo têm o mesmo hash; custa O(1), não percorre os objetos
+	public long stateHash() {
+		return hash;
+	}
+
+	public int bombCount() {
+		return bombs;
+	}
+
+	public RoomJournal getJournal() {
+		return journal;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
 	public void setBigFish(BigFish b) {
 		bigFish = b;
 	}
@@ -123,29 +230,208 @@ public class Room {
 
 	
 	public GameObject getTopObjectAt(Point2D p) {
-		GameObject top = null;
-		for (GameObject go : objects) {
-			if (go.getPosition() != null && go.getPosition().equals(p)) {
-				if (top == null || go.getLayer() >= top.getLayer())
-					top = go;
+		List<GameObject> cell = cellAt(p, false);
+		if (cell == null || cell.isEmpty())
+			return null;
+		return cell.get(cell.size() - 1);
+	}
+
+	public List<GameObject> getObjectsAt(Point2D p) {
+		List<GameObject> cell = cellAt(p, false);
+		if (cell == null)
+			return new ArrayList<>();
+		return new ArrayList<>(cell);
+	}
+
+	//Índice espacial
+	private List<GameObject> cellAt(Point2D p, boolean create) {
+		if (p == null)
+			return null;
+		int x = p.getX();
+		int y = p.getY();
+		if (x >= 0 && x < width && y >= 0 && y < height) {
+			int i = y * width + x;
+			if (cells[i] == null && create)
+				cells[i] = new ArrayList<>(2);
+			return cells[i];
+		}
+		List<GameObject> cell = outsideCells.get(p);
+		if (cell == null && create) {
+			cell = new ArrayList<>(2);
+			outsideCells.put(p, cell);
+		}
+		return cell;
+	}
+
+	// Insere mantendo a pilha ordenada por layer; em empate fica por cima o que entrou na sala mais tarde
+	private void index(GameObject obj) {
+		List<GameObject> cell = cellAt(obj.getPosition(), true);
+		if (cell == null)
+			return;
+		long order = addOrder.get(obj);
+		int i = cell.size();
+		while (i > 0) {
+			GameObject below = cell.get(i - 1);
+			if (below.getLayer() < obj.getLayer()
+					|| (below.getLayer() == obj.getLayer() && addOrder.get(below) < order))
+				break;
+			i--;
+		}
+		if (obj instanceof Effect) {
+			cell.add(i, obj);
+			return;
+		}
+		hash ^= cellHash(cell);
+		cell.add(i, obj);
+		hash ^= cellHash(cell);
+	}
+
+	// Parte do hash que vem de uma célula; entrar ou sair um objeto pode mudar
+	// a chave dos iguais que estão por cima dele (ver Zobrist)
+	private static long cellHash(List<GameObject> cell) {
+		long h = 0L;
+		for (int i = 0; i < cell.size(); i++) {
+			GameObject obj = cell.get(i);
+			if (obj instanceof Effect)
+				continue;
+			char token = ObjectType.tokenOf(obj);
+			int below = 0;
+			for (int j = 0; j < i; j++)
+				if (ObjectType.tokenOf(cell.get(j)) == token)
+					below++;
+			h ^= Zobrist.key(obj, below);
+		}
+		return h;
+	}
+
+	private void unindex(GameObject obj) {
+		List<GameObject> cell = cellAt(obj.getPosition(), false);
+		if (cell == null)
+			return;
+		for (int i = 0; i < cell.size(); i++) {
+			if (cell.get(i) == obj) {
+				long before = (obj instanceof Effect) ? 0L : cellHash(cell);
+				cell.remove(i);
+				if (!(obj instanceof Effect))
+					hash ^= before ^ cellHash(cell);
+				break;
 			}
 		}
-		return top;
+		if (cell.isEmpty() && obj.getPosition() != null && !inGrid(obj.getPosition()))
+			outsideCells.remove(obj.getPosition());
 	}
 
-	public List<GameObject> getObjectsAt(Point2D p) {
-		List<GameObject> l = new ArrayList<>();
-		for (GameObject go : objects) {
-			if (go.getPosition() != null && go.getPosition().equals(p))
-				l.add(go);
+	/**
+	 * Muda o estado que não se vê de um objeto (ex: bomba em queda, ver
+	 * GameObject.restoreState), mantendo o hash da sala certo.
+	 */
+	public void changeState(GameObject obj, Object state) {
+		boolean indexed = addOrder.containsKey(obj) && !(obj instanceof Effect);
+		if (indexed)
+			unindex(obj);
+		obj.restoreState(state);
+		if (indexed)
+			index(obj);
+	}
+
+	private boolean inGrid(Point2D p) {
+		return p.getX() >= 0 && p.getX() < width && p.getY() >= 0 && p.getY() < height;
+	}
+
+	private void register(GameObject obj) {
+		register(obj, -1);
+	}
+
+	private int insertionIndex(long order) {
+		int lo = 0;
+		int hi = objects.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			Long o = addOrder.get(objects.get(mid));
+			if (o != null && o < order)
+				lo = mid + 1;
+			else
+				hi = mid;
 		}
-		return l;
+		return lo;
+	}
+
+	// Ao construir a sala: todos os Movables já ficam acordados, não é preciso acordar vizinhos
+	private void load(GameObject obj) {
+		register(obj, -1, false);
+	}
+
+	// order >= 0 repõe a ordem original de um objeto (undo de uma remoção)
+	private void register(GameObject obj, long order) {
+		register(obj, order, true);
+	}
+
+	private void register(GameObject obj, long order, boolean wake) {
+		boolean fresh = !addOrder.containsKey(obj);
+		if (fresh && order >= 0) {
+			// volta ao seu lugar na lista, para a lista continuar pela ordem de entrada
+			int i = insertionIndex(order);
+			objects.add(i, obj);
+			imageTiles.add(obj);
+		} else {
+			objects.add(obj);
+			imageTiles.add(obj);
+		}
+		if (fresh) {
+			if (order < 0)
+				order = nextOrder++;
+			addOrder.put(obj, order);
+			index(obj);
+			if (obj instanceof Bomb)
+				bombs++;
+			if (obj instanceof Movable)
+				awake.put(order, obj);
+			if (obj instanceof Effect)
+				effects.add((Effect) obj);
+			if (wake)
+				wakeAround(obj.getPosition());
+		}
+	}
+
+	// Acorda os Movables que podem ser afetados por uma alteração na célula p:
+	// a própria célula, as vizinhas e a coluna de Movables empilhada por baixo
+	// (as regras de esmagamento contam o peso que está em cima do peixe).
+	private void wakeAround(Point2D p) {
+		if (p == null)
+			return;
+		int x = p.getX();
+		int y = p.getY();
+		wakeCell(p);
+		wakeCell(new Point2D(x, y - 1));
+		wakeCell(new Point2D(x - 1, y));
+		wakeCell(new Point2D(x + 1, y));
+
+		Point2D cur = new Point2D(x, y + 1);
+		while (wakeCell(cur))
+			cur = new Point2D(x, cur.getY() + 1);
+	}
+
+	private boolean wakeCell(Point2D p) {
+		List<GameObject> cell = cellAt(p, false);
+		if (cell == null)
+			return false;
+		boolean found = false;
+		for (GameObject g : cell) {
+			if (g instanceof Movable) {
+				awake.put(addOrder.get(g), g);
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	public boolean isAtRest() {
+		return awake.isEmpty() && effects.isEmpty();
 	}
 
 	public boolean isInsideBounds(Point2D p) {
 		try {
-			if (ImageGUI.getInstance() != null)
-				return ImageGUI.getInstance().isWithinBounds(p);
+			return display.isWithinBounds(p);
 		} catch (Exception ignored) {
 		}
 		return true;
@@ -159,52 +445,58 @@ public class Room {
 	    }
 	    while (imageTiles.remove(obj)) {
 	    }
-	    // se era um peixe, limpar referência
-	    if (obj == bigFish)
-	        bigFish = null;
-	    if (obj == smallFish)
-	        smallFish = null;
-
-	    // Tentar também remover a imagem da GUI e forçar update.
-	    try {
-	        if (ImageGUI.getInstance() != null) {
-	            ImageGUI.getInstance().removeImage(obj);
-	            ImageGUI.getInstance().update();
-	        }
-	    } catch (Exception ignored) {
-	    	
+	    if (addOrder.containsKey(obj)) {
+	        if (!(obj instanceof Effect))
+	            journal.record(new RoomJournal.Delta(RoomJournal.Kind.REMOVE, obj, obj.getPosition(), null,
+	                    addOrder.get(obj), obj.saveState()));
+	        unindex(obj);
+	        if (obj instanceof Bomb)
+	            bombs--;
+	        awake.remove(addOrder.remove(obj));
+	        effects.remove(obj);
+	        wakeAround(obj.getPosition());
 	    }
+	    // os peixes continuam referenciados: o estado (vivo/fora) está no próprio peixe
+	    for (RoomListener l : listeners)
+	        l.objectRemoved(this, obj);
 	}
 	public void addObject(GameObject obj) {
 	    if (obj == null) 
 	    	return;
 
-	    this.objects.add(obj);
-	    this.imageTiles.add(obj);
+	    boolean added = !addOrder.containsKey(obj);
+	    register(obj);
+	    if (added && !(obj instanceof Effect))
+	        journal.record(new RoomJournal.Delta(RoomJournal.Kind.ADD, obj, null, obj.getPosition(),
+	                addOrder.get(obj), null));
 	    
-	    try {
-	        if (ImageGUI.getInstance() != null) {
-	            List<ImageTile> single = new ArrayList<>();
-	            single.add(obj);
-	            ImageGUI.getInstance().addImages(single);
-	            ImageGUI.getInstance().update();
-	        }
-	    } catch (Exception ignored) {
-	    	
-	    }
+	    if (added)
+	        for (RoomListener l : listeners)
+	            l.objectAdded(this, obj);
 	}
 
 	public void moveObject(GameObject obj, Point2D to) {
 	    if (obj == null || to == null) return;
 
 	    Point2D from = obj.getPosition();
-	    // se não havia posição anterior, só atualiza
-	    if (from == null) {
-	        obj.setPosition(to);
-	        return;
+	    boolean indexed = addOrder.containsKey(obj);
+	    if (indexed && !(obj instanceof Effect))
+	        journal.record(new RoomJournal.Delta(RoomJournal.Kind.MOVE, obj, from, to, addOrder.get(obj),
+	                obj.saveState()));
+	    if (indexed)
+	        unindex(obj);
+	    obj.setPosition(to);
+	    if (indexed) {
+	        index(obj);
+	        wakeAround(from);
+	        wakeAround(to);
+	        for (RoomListener l : listeners)
+	            l.objectMoved(this, obj, from, to);
 	    }
 
-	    obj.setPosition(to);
+	    // se não havia posição anterior, só atualiza; a desfazer, o Krab já está no journal
+	    if (from == null || journal.isReplaying())
+	        return;
 
 	    //Movimento do Krab quando movemos horizontalmente a rock
 	    try {
@@ -224,22 +516,8 @@ public class Room {
 	                        }
 	                    }
 
-	                    if (!krabAlready) {
-	                        Krab krab = new Krab(above, this);
-	                        objects.add(krab);
-	                        imageTiles.add(krab);
-	                        // tentar actualizar GUI com segurança
-	                        try {
-	                            if (ImageGUI.getInstance() != null) {
-	                                List<ImageTile> single = new ArrayList<>();
-	                                single.add(krab);
-	                                ImageGUI.getInstance().addImages(single);
-	                                ImageGUI.getInstance().update();
-	                            }
-	                        } catch (Exception ignored) {
-	                        	
-	                        }
-	                    }
+	                    if (!krabAlready)
+	                        addObject(new Krab(above, this));
 	                }
 	            }
 	        }
@@ -247,48 +525,128 @@ public class Room {
 	    }
 	}
 
+	//Undo/Redo
+	// Desfaz a última jogada (e tudo o que aconteceu depois dela)
+	public boolean undo() {
+	    if (!journal.canUndo())
+	        return false;
+
+	    journal.setReplaying(true);
+	    try {
+	        revert(journal.takePending());
+	        revert(journal.popUndo());
+	    } finally {
+	        journal.setReplaying(false);
+	    }
+	    display.update();
+	    return true;
+	}
+
+	public boolean redo() {
+	    if (!journal.canRedo())
+	        return false;
+
+	    journal.setReplaying(true);
+	    try {
+	        revert(journal.takePending());
+	        reapply(journal.popRedo());
+	    } finally {
+	        journal.setReplaying(false);
+	    }
+	    display.update();
+	    return true;
+	}
+
+	private void revert(List<RoomJournal.Delta> group) {
+	    for (int i = group.size() - 1; i >= 0; i--) {
+	        RoomJournal.Delta d = group.get(i);
+	        d.after = d.obj.saveState();
+	        switch (d.kind) {
+	        case ADD:
+	            removeObject(d.obj);
+	            break;
+	        case REMOVE:
+	            d.obj.setRoom(this);
+	            d.obj.setPosition(d.from);
+	            changeState(d.obj, d.before);
+	            restore(d.obj, d.order);
+	            break;
+	        case MOVE:
+	            moveObject(d.obj, d.from);
+	            changeState(d.obj, d.before);
+	            break;
+	        }
+	    }
+	}
+
+	private void reapply(List<RoomJournal.Delta> group) {
+	    for (RoomJournal.Delta d : group) {
+	        switch (d.kind) {
+	        case ADD:
+	            d.obj.setRoom(this);
+	            d.obj.setPosition(d.to);
+	            restore(d.obj, d.order);
+	            break;
+	        case REMOVE:
+	            removeObject(d.obj);
+	            break;
+	        case MOVE:
+	            moveObject(d.obj, d.to);
+	            break;
+	        }
+	        changeState(d.obj, d.after);
+	    }
+	}
+
+	private void restore(GameObject obj, long order) {
+	    register(obj, order);
+	    for (RoomListener l : listeners)
+	        l.objectAdded(this, obj);
+	}
+
 	public void applyGravity() {
 
-	    List<GameObject> snapshot = new ArrayList<>(objects);
-	    Map<GameObject, Point2D> origPos = new HashMap<>();
-	    
-	    for (GameObject g : snapshot)
-	        origPos.put(g, g.getPosition());
-	    
-	    for (GameObject go : snapshot) {
+	    // Objetos criados durante este tick só são avaliados no próximo
+	    long last = nextOrder - 1;
+	    Map.Entry<Long, GameObject> e = awake.firstEntry();
 
-	        Point2D start = origPos.get(go);
-	        if (start == null || go.getPosition() == null) 
-	            continue;
+	    while (e != null && e.getKey() <= last) {
+	        long cursor = e.getKey();
+	        GameObject go = e.getValue();
+	        // adormece; volta a acordar se ele ou algo à volta mudar
+	        awake.remove(cursor);
 
-	        GameObject.Weight w = go.getWeight();
-	        Point2D below = new Point2D(start.getX(), start.getY() + 1);
+	        Point2D start = go.getPosition();
+	        if (start != null) {
+	            GameObject.Weight w = go.getWeight();
+	            Point2D below = new Point2D(start.getX(), start.getY() + 1);
 
-	        // Obter o objecto top na célula de baixo
-	        GameObject topBelow = getTopObjectAt(below);
+	            // Obter o objecto top na célula de baixo
+	            GameObject topBelow = getTopObjectAt(below);
+
+	            // objeto pesado cai sobre um Crushable parte
+	            if (w == GameObject.Weight.HEAVY && topBelow instanceof Crushable) {
+	                try {
+	                    ((Crushable) topBelow).onCrushedBy(this, go, below);
+	                } catch (Exception ignored) {}
+	                moveObject(go, below);
+	            }
 
-	        // objeto pesado cai sobre um Crushable parte
-	        if (w == GameObject.Weight.HEAVY && topBelow instanceof Crushable) {
+	            // Queda normal
 	            try {
-	                ((Crushable) topBelow).onCrushedBy(this, go, below);
+	                ((Movable) go).onFall(this, start, below);
 	            } catch (Exception ignored) {}
-	            moveObject(go, below);
 	        }
 
-	        // Queda normal
-	        try {
-	            ((Movable) go).onFall(this, start, below);
-	        } catch (Exception ignored) {}
+	        e = awake.higherEntry(cursor);
 	    }
 
 	    try {
-	        List<GameObject> effectsSnapshot = new ArrayList<>(objects);
-	        for (GameObject go : effectsSnapshot) {
-	            if (go instanceof Effect) {
-	                try {
-	                    ((Effect) go).tick(); // diminui lifetime e auto-remove quando acabar
-	                } catch (Throwable ignored) {}
-	            }
+	        List<Effect> effectsSnapshot = new ArrayList<>(effects);
+	        for (Effect fx : effectsSnapshot) {
+	            try {
+	                fx.tick(); // diminui lifetime e auto-remove quando acabar
+	            } catch (Throwable ignored) {}
 	        }
 	    } catch (Throwable ignored) {
 	    }
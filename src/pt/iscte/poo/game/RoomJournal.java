@@ -0,0 +1,135 @@
+package pt.iscte.poo.game;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import objects.GameObject;
+import pt.iscte.poo.utils.Point2D;
+
+/**
+ * Registo das alterações de uma sala (adicionar, remover, mover), agrupadas
+ * por jogada, para o undo/redo.
+ * <p>
+ * Cada jogada do jogador abre um grupo novo; tudo o que acontece até à
+ * jogada seguinte (gravidade, explosões, caranguejos) fica nesse grupo.
+ * Desfazer aplica as operações inversas pela ordem contrária, por isso
+ * custa o número de alterações da jogada e não o tamanho da sala.
+ * <p>
+ * O que acontece depois de um undo/redo sem nova jogada (os caranguejos
+ * continuam a andar) fica pendente: é revertido antes do undo/redo
+ * seguinte, ou passa a fazer parte da próxima jogada.
+ * Quem aplica as operações é a Room (ver Room.undo / Room.redo).
+ */
+public class RoomJournal {
+
+	// Limite de jogadas guardadas; as mais antigas perdem-se
+	private static final int MAX_MOVES = 10000;
+
+	enum Kind {
+		ADD, REMOVE, MOVE
+	}
+
+	static final class Delta {
+		final Kind kind;
+		final GameObject obj;
+		final Point2D from; // posição antes (REMOVE, MOVE)
+		final Point2D to; // posição depois (ADD, MOVE)
+		final long order; // ordem do objeto na sala
+		final Object before; // estado interno antes da alteração
+		Object after; // estado interno depois (preenchido ao desfazer)
+
+		Delta(Kind kind, GameObject obj, Point2D from, Point2D to, long order, Object before) {
+			this.kind = kind;
+			this.obj = obj;
+			this.from = from;
+			this.to = to;
+			this.order = order;
+			this.before = before;
+		}
+	}
+
+	private final Deque<List<Delta>> undoStack = new ArrayDeque<>();
+	private final Deque<List<Delta>> redoStack = new ArrayDeque<>();
+	private List<Delta> current; // null = ainda não houve jogadas
+	private boolean pending = false; // current tem só alterações depois de um undo/redo
+	private boolean replaying = false;
+
+	// Chamado antes de cada jogada do jogador
+	public void beginMove() {
+		if (!pending)
+			closeCurrent();
+		if (current == null || !pending)
+			current = new ArrayList<>();
+		pending = false;
+		redoStack.clear();
+	}
+
+	public boolean canUndo() {
+		return (!pending && current != null && !current.isEmpty()) || !undoStack.isEmpty();
+	}
+
+	public boolean canRedo() {
+		return !redoStack.isEmpty();
+	}
+
+	public void clear() {
+		undoStack.clear();
+		redoStack.clear();
+		current = null;
+		pending = false;
+	}
+
+	void record(Delta d) {
+		if (current != null && !replaying)
+			current.add(d);
+	}
+
+	boolean isReplaying() {
+		return replaying;
+	}
+
+	void setReplaying(boolean replaying) {
+		this.replaying = replaying;
+	}
+
+	// Alterações pendentes (a reverter antes de um undo/redo)
+	List<Delta> takePending() {
+		if (!pending || current == null)
+			return new ArrayList<>();
+		List<Delta> p = current;
+		current = new ArrayList<>();
+		return p;
+	}
+
+	// Próximo grupo a desfazer (fecha o grupo aberto); null se não houver
+	List<Delta> popUndo() {
+		if (!pending)
+			closeCurrent();
+		List<Delta> group = undoStack.pollFirst();
+		if (group != null)
+			redoStack.addFirst(group);
+		current = new ArrayList<>();
+		pending = true;
+		return group;
+	}
+
+	List<Delta> popRedo() {
+		List<Delta> group = redoStack.pollFirst();
+		if (group != null)
+			undoStack.addFirst(group);
+		current = new ArrayList<>();
+		pending = true;
+		return group;
+	}
+
+	private void closeCurrent() {
+		if (current != null && !current.isEmpty()) {
+			undoStack.addFirst(current);
+			if (undoStack.size() > MAX_MOVES)
+				undoStack.removeLast();
+		}
+		current = null;
+	}
+}
@@ -0,0 +1,26 @@
+package pt.iscte.poo.game;
+
+import objects.GameObject;
+import pt.iscte.poo.utils.Point2D;
+
+/**
+ * Quem quer saber o que muda numa sala (ex: a janela, ver {@link DisplaySync}).
+ * <p>
+ * A sala avisa cada objeto que entra, sai, muda de célula ou de aspeto, no
+ * momento em que acontece (também durante o undo/redo). Construir a sala de raiz não
+ * gera eventos por objeto: só um {@link #roomReset(Room)} no fim.
+ */
+public interface RoomListener {
+
+	void objectAdded(Room room, GameObject obj);
+
+	void objectRemoved(Room room, GameObject obj);
+
+	void objectMoved(Room room, GameObject obj, Point2D from, Point2D to);
+
+	// Mesma célula, outra imagem (ex: o peixe virou-se)
+	void objectChanged(Room room, GameObject obj);
+
+	// O conteúdo todo da sala mudou: mostrar tudo outra vez
+	void roomReset(Room room);
+}
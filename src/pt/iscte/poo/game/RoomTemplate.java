@@ -0,0 +1,124 @@
+package pt.iscte.poo.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sala já lida do ficheiro: a grelha de caracteres, imutável.
+ * <p>
+ * As salas lidas ficam em cache (por caminho do ficheiro e data de
+ * modificação), por isso reiniciar um nível só cria objetos novos a partir
+ * da grelha, sem voltar a ler nem a interpretar o ficheiro.
+ */
+public final class RoomTemplate {
+
+	// Célula que não existe no ficheiro (linha mais curta que a sala): nem água
+	public static final char NO_CELL = '\0';
+
+	private static final Map<String, RoomTemplate> CACHE = new ConcurrentHashMap<>();
+
+	private final String name;
+	private final long lastModified;
+	private final int width;
+	private final int height;
+	private final char[] cells;
+	// Objetos extra empilhados numa célula: triplos (x, y, token)
+	private final int[] extras;
+
+	RoomTemplate(String name, long lastModified, int width, int height, char[] cells) {
+		this(name, lastModified, width, height, cells, new int[0]);
+	}
+
+	RoomTemplate(String name, long lastModified, int width, int height, char[] cells, int[] extras) {
+		this.name = name;
+		this.lastModified = lastModified;
+		this.width = width;
+		this.height = height;
+		this.cells = cells;
+		this.extras = extras;
+	}
+
+	// Sala construída à mão (ex: estados do solver); extras são triplos (x, y, token)
+	public static RoomTemplate of(String name, int width, int height, char[] cells, int[] extras) {
+		if (cells.length != width * height || extras.length % 3 != 0)
+			throw new IllegalArgumentException("dimensões inválidas");
+		return new RoomTemplate(name, 0L, width, height, cells.clone(), extras.clone());
+	}
+
+	// Devolve a sala em cache, ou lê o ficheiro se mudou desde a última leitura
+	public static RoomTemplate load(File f) throws IOException {
+		String key = f.getAbsolutePath();
+		long modified = f.lastModified();
+
+		RoomTemplate cached = CACHE.get(key);
+		if (cached != null && cached.lastModified == modified && modified != 0L)
+			return cached;
+
+		RoomTemplate t = f.getName().endsWith(BinaryRoomFile.EXTENSION) ? BinaryRoomFile.read(f) : parse(f);
+		CACHE.put(key, t);
+		return t;
+	}
+
+	private static RoomTemplate parse(File f) throws IOException {
+		long modified = f.lastModified();
+		List<String> lines = Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+
+		int w = 0;
+		for (String line : lines)
+			w = Math.max(w, line.length());
+		int h = lines.size();
+
+		char[] cells = new char[w * h];
+		for (int y = 0; y < h; y++) {
+			String line = lines.get(y);
+			line.getChars(0, line.length(), cells, y * w);
+		}
+		return new RoomTemplate(f.getName(), modified, w, h, cells);
+	}
+
+	public static void clearCache() {
+		CACHE.clear();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public char tokenAt(int x, int y) {
+		return cells[y * width + x];
+	}
+
+	public int getExtraCount() {
+		return extras.length / 3;
+	}
+
+	public int getExtraX(int i) {
+		return extras[i * 3];
+	}
+
+	public int getExtraY(int i) {
+		return extras[i * 3 + 1];
+	}
+
+	public char getExtraToken(int i) {
+		return (char) extras[i * 3 + 2];
+	}
+
+	// Cria uma sala nova (objetos novos) a partir da grelha
+	public Room instantiate(GameEngine ge) {
+		return Room.fromTemplate(this, ge);
+	}
+}
@@ -0,0 +1,46 @@
+package pt.iscte.poo.game;
+
+import objects.Bomb;
+import objects.GameObject;
+import objects.ObjectType;
+
+/**
+ * Chaves de Zobrist para o hash de uma sala: cada (tipo, x, y) tem uma
+ * chave de 64 bits e o hash da sala é o XOR das chaves dos seus objetos.
+ * Pôr ou tirar um objeto é um XOR, por isso a Room mantém o hash sem
+ * percorrer a lista.
+ * <p>
+ * A chave de um objeto conta também com o estado que não se vê (uma bomba
+ * em queda, o mesmo bit que o StateCodec guarda) e com quantos objetos
+ * iguais estão por baixo dele na mesma célula: dois iguais na mesma célula
+ * não se anulam no XOR.
+ * <p>
+ * As chaves saem de uma função fixa (splitmix64), não de um Random: o mesmo
+ * estado dá o mesmo hash em qualquer execução, o que serve para comparar
+ * replays e detetar dessincronizações entre máquinas.
+ */
+public final class Zobrist {
+
+	private Zobrist() {
+	}
+
+	public static long key(char token, int x, int y) {
+		long v = ((long) token << 40) ^ ((long) (x & 0xFFFFF) << 20) ^ (y & 0xFFFFF);
+		return mix(v + 0x9E3779B97F4A7C15L);
+	}
+
+	// below: objetos com o mesmo token por baixo deste, na mesma célula
+	public static long key(GameObject obj, int below) {
+		long k = key(ObjectType.tokenOf(obj), obj.getPosition().getX(), obj.getPosition().getY());
+		if (obj instanceof Bomb && ((Bomb) obj).isFalling())
+			k = mix(k ^ 0x8000_0000_0000_0000L);
+		return below == 0 ? k : mix(k + below);
+	}
+
+	// splitmix64
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
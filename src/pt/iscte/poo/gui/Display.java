@@ -0,0 +1,50 @@
+package pt.iscte.poo.gui;
+
+import java.util.List;
+
+import pt.iscte.poo.utils.Point2D;
+
+/**
+ * Output side of the game: where the images of a room are shown and where
+ * the rules ask for the limits of the grid.
+ * <p>
+ * ImageGUI is the Swing implementation; HeadlessDisplay does nothing and
+ * allows the rules to run without a window (batch jobs, tests, replays).
+ */
+public interface Display {
+
+	void addImage(ImageTile image);
+
+	void addImages(List<? extends ImageTile> images);
+
+	void removeImage(ImageTile image);
+
+	void clearImages();
+
+	/**
+	 * The image moved from one tile to another.
+	 */
+	void imageMoved(ImageTile image, Point2D from, Point2D to);
+
+	/**
+	 * The image changed its name (what is drawn) but not its tile.
+	 */
+	void imageChanged(ImageTile image);
+
+	/**
+	 * Asks for the images to be drawn again.
+	 */
+	void update();
+
+	void setStatusMessage(String message);
+
+	boolean isWithinBounds(Point2D p);
+
+	void showMessage(String title, String message);
+
+	/**
+	 * @return the text typed by the user, or null if there is no one to ask
+	 */
+	String showInputDialog(String title, String message);
+
+}
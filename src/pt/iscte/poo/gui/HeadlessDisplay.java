@@ -0,0 +1,70 @@
+package pt.iscte.poo.gui;
+
+import java.util.List;
+
+import pt.iscte.poo.utils.Point2D;
+
+/**
+ * Display that draws nothing. The bounds follow the same rule as ImageGUI
+ * (same default size), so the game behaves the same with or without a window.
+ */
+public class HeadlessDisplay implements Display {
+
+	private final int width;
+	private final int height;
+
+	public HeadlessDisplay() {
+		this(480, 480);
+	}
+
+	public HeadlessDisplay(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	@Override
+	public void addImage(ImageTile image) {
+	}
+
+	@Override
+	public void addImages(List<? extends ImageTile> images) {
+	}
+
+	@Override
+	public void removeImage(ImageTile image) {
+	}
+
+	@Override
+	public void clearImages() {
+	}
+
+	@Override
+	public void imageMoved(ImageTile image, Point2D from, Point2D to) {
+	}
+
+	@Override
+	public void imageChanged(ImageTile image) {
+	}
+
+	@Override
+	public void update() {
+	}
+
+	@Override
+	public void setStatusMessage(String message) {
+	}
+
+	@Override
+	public boolean isWithinBounds(Point2D p) {
+		return p.getX() >= 0 && p.getY() >= 0 && p.getX() <= width && p.getY() <= height;
+	}
+
+	@Override
+	public void showMessage(String title, String message) {
+	}
+
+	@Override
+	public String showInputDialog(String title, String message) {
+		return null;
+	}
+}
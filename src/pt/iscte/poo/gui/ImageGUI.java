@@ -1,11 +1,17 @@
 package pt.iscte.poo.gui;
 
+import java.awt.AlphaComposite;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.WindowAdapter;
@@ -19,13 +25,20 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
 import pt.iscte.poo.observer.Observed;
 import pt.iscte.poo.utils.Point2D;
@@ -61,15 +74,19 @@ import pt.iscte.poo.utils.Point2D;
  */
 
 //Changed to local Observer-Observed pattern 27-Set-2018
-public class ImageGUI extends Observed {
+public class ImageGUI extends Observed implements Display {
 
     private static final int LABEL_HEIGHT = 20;
 
     private static final long TICK_TIME = 500;
 
+    // Speeds cycled by cycleTimeScale(): normal, fast-forward, slow motion
+    private static final double[] TIME_SCALES = { 1.0, 2.0, 4.0, 0.5 };
+
 	private static ImageGUI INSTANCE;
 
     private final String IMAGE_DIR = "images";
+    private final String ATLAS_DIR = SpriteAtlas.DEFAULT_DIR;
 
     private int tileWidth = 48;
     private int tileHeight = 48;
@@ -81,24 +98,43 @@ public class ImageGUI extends Observed {
     private JPanel panel;
     private JLabel info;
 
-    private Map<String, ImageIcon> imageDB = new HashMap<String, ImageIcon>();
-
-    private List<ImageTile> images = new ArrayList<ImageTile>();
+    // Sprites by name, decoded in the background (see initImages) or on first use
+    private Map<String, Future<BufferedImage>> imageDB = new ConcurrentHashMap<String, Future<BufferedImage>>();
+    private final ExecutorService spriteLoader = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), r -> {
+                Thread t = new Thread(r, "sprite-loader");
+                t.setDaemon(true);
+                return t;
+            });
+    // All the sprites in one image; paint draws from here (see SpriteAtlas)
+    private Future<SpriteAtlas> atlas;
+
+    private TileStore images = new TileStore(); // by identity, iterated in paint order
+    // The images that are not static: the only ones paint has to go through
+    private TileStore dynamicImages = new TileStore();
+
+    // Static images (see ImageTile.isStatic) pre-composited into one image
+    private BufferedImage background;
+    private boolean backgroundDirty = true;
+
+    // Dirty-rectangle repaint: the area (in pixels) that changed since the last
+    // repaint request (images added, removed, moved or changed, see imageMoved)
+    private Rectangle dirty;
+    private boolean repaintPending = false;
 
     // private Point2D lastMouseCoordinate;
     private boolean mouseClicked;
 
     private int lastKeyPressed;
     private boolean keyPressed;
+    private final InputQueue input = new InputQueue(); // every key press, in order
     private boolean windowClosed = false; // Added 25-oct-2022
 
-    private int maxLevel;
-
 	private KeyWatcher keywatcher; // added dec 2022
 
 	private Ticker ticker; // added jul 2024
 	
-	private int ticks = 0; // added jul 2024
+	private volatile int ticks = 0; // added jul 2024
 
     private ImageGUI() {
         init();
@@ -158,7 +194,12 @@ public class ImageGUI extends Observed {
 
 //		new MouseWatcher().start();
 
-		ticker = new Ticker();
+		ticker = new Ticker("ticker", TICK_TIME, () -> {
+			try {
+				tick();
+			} catch (InterruptedException e) {
+			}
+		});
 		ticker.start();
 
         frame.addKeyListener(new KeyListener() {
@@ -175,23 +216,50 @@ public class ImageGUI extends Observed {
 
             @Override
             public void keyPressed(KeyEvent e) {
-                lastKeyPressed = e.getKeyCode();
-                keyPressed = true;
-                releaseObserver();
+                postKey(e.getKeyCode());
             }
         });
     }
 
+    /**
+     * Queues a key press, as if it came from the keyboard (also used by bots
+     * and scripts). Every press is kept, in order, until the observer drains
+     * the queue with {@link #pollKey()}.
+     *
+     * @return false if the input queue was full and the key was dropped
+     */
+    public boolean postKey(int keyCode) {
+        boolean queued = input.offer(new KeyInput(keyCode, System.nanoTime(), ticks));
+        keyArrived(keyCode);
+        return queued;
+    }
+
+    // Wakes up the KeyWatcher
+    private synchronized void keyArrived(int keyCode) {
+        lastKeyPressed = keyCode;
+        keyPressed = true;
+        notifyAll();
+    }
+
+    /**
+     * @return the oldest key press not yet handled, or null if there is none
+     */
+    public KeyInput pollKey() {
+        return input.poll();
+    }
+
     synchronized void releaseObserver() {
         notifyAll();
     }
 
-    synchronized void waitForKey() throws InterruptedException {
-        while (!keyPressed) {
-            wait();
+    void waitForKey() throws InterruptedException {
+        synchronized (this) {
+            while (!keyPressed) {
+                wait();
+            }
+            keyPressed = false;
         }
         notifyObservers();
-        keyPressed = false;
     }
 
     synchronized void waitForClick() throws InterruptedException {
@@ -202,18 +270,112 @@ public class ImageGUI extends Observed {
         mouseClicked = false;
     }
 
-    synchronized void tick() throws InterruptedException {
-        ticks = getTicks() + 1;
+    void tick() throws InterruptedException {
+        synchronized (this) {
+            ticks = getTicks() + 1;
+        }
         notifyObservers();
     }
 
+    // Starts loading the sprite atlas in the background; does not wait.
+    // Uses the prebuilt one (SpriteAtlas.main) if it is up to date, otherwise
+    // decodes every sprite in the images folder, in parallel, and packs them.
     private void initImages() {
         File dir = new File(IMAGE_DIR);
-        for (File f : dir.listFiles()) {
+        File[] files = dir.listFiles();
+        File atlasDir = new File(ATLAS_DIR);
+        if (SpriteAtlas.isUpToDate(atlasDir, files, tileWidth, tileHeight)) {
+            Future<SpriteAtlas> prebuilt = spriteLoader.submit(() -> SpriteAtlas.load(atlasDir).toCompatible());
+            atlas = prebuilt;
+            // the atlas has the same names as the folder (checked above): register them all,
+            // so that adding an image never has to look in the folder
+            for (File f : files) {
+                String name = f.getName().substring(0, f.getName().lastIndexOf('.'));
+                imageDB.putIfAbsent(name, spriteLoader.submit(() -> {
+                    try {
+                        return prebuilt.get().getSprite(name);
+                    } catch (ExecutionException e) {
+                        return loadSprite(f);
+                    }
+                }));
+            }
+            return;
+        }
+        for (File f : files) {
             assert (f.getName().lastIndexOf('.') != -1);
-            imageDB.put(f.getName().substring(0, f.getName().lastIndexOf('.')),
-                    new ImageIcon(IMAGE_DIR + "/" + f.getName()));
+            imageDB.putIfAbsent(f.getName().substring(0, f.getName().lastIndexOf('.')),
+                    spriteLoader.submit(() -> loadSprite(f)));
         }
+        // submitted last, so the sprites it waits for are already ahead of it in the pool
+        atlas = spriteLoader.submit(() -> {
+            Map<String, BufferedImage> sprites = new HashMap<String, BufferedImage>();
+            for (Map.Entry<String, Future<BufferedImage>> e : imageDB.entrySet())
+                sprites.put(e.getKey(), e.getValue().get());
+            return SpriteAtlas.pack(sprites).toCompatible();
+        });
+    }
+
+    // Waits for the atlas; null if it could not be loaded
+    private SpriteAtlas atlas() {
+        try {
+            return atlas == null ? null : atlas.get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // From the atlas or, for images that are not in it, from the sprite
+    private void drawSprite(Graphics g, SpriteAtlas sprites, String name, int x, int y) {
+        if (sprites == null || !sprites.draw(g, name, x, y, frame))
+            g.drawImage(sprite(name), x, y, frame);
+    }
+
+    /**
+     * The sprite for an image name, ready to draw: in the screen's pixel format
+     * and scaled to the tile size. Names that were not in the images folder at
+     * startup are looked up (and decoded) on first use. Waits if the sprite is
+     * still being decoded.
+     *
+     * @return the sprite, or null if there is no image file with that name
+     */
+    private BufferedImage sprite(String name) {
+        Future<BufferedImage> f = imageDB.get(name);
+        if (f == null) {
+            File file = imageFile(name);
+            if (file == null)
+                return null;
+            f = imageDB.computeIfAbsent(name, n -> spriteLoader.submit(() -> loadSprite(file)));
+        }
+        try {
+            return f.get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private boolean hasSprite(String name) {
+        return imageDB.containsKey(name) || imageFile(name) != null;
+    }
+
+    // images/<name>.<ext>, or null
+    private File imageFile(String name) {
+        File[] files = new File(IMAGE_DIR).listFiles((d, n) -> n.lastIndexOf('.') != -1
+                && n.substring(0, n.lastIndexOf('.')).equals(name));
+        return (files != null && files.length > 0) ? files[0] : null;
+    }
+
+    // Runs on the sprite-loader threads
+    private BufferedImage loadSprite(File f) throws IOException {
+        BufferedImage src = ImageIO.read(f);
+        if (src == null) { // a format ImageIO does not know: let Swing decode it
+            Image icon = new ImageIcon(f.getPath()).getImage();
+            src = new BufferedImage(Math.max(1, icon.getWidth(null)), Math.max(1, icon.getHeight(null)),
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = src.createGraphics();
+            g.drawImage(icon, 0, 0, null);
+            g.dispose();
+        }
+        return resizeImage(src, tileWidth, tileHeight);
     }
 
     /**
@@ -240,7 +402,7 @@ public class ImageGUI extends Observed {
             for (ImageTile i : newImages) {
                 if (i == null)
                     throw new IllegalArgumentException("Null image");
-                if (!imageDB.containsKey(i.getName())) {
+                if (!hasSprite(i.getName())) {
                     throw new IllegalArgumentException("No such image in DB " + i.getName());
                 }
                 addImage(i);
@@ -262,7 +424,13 @@ public class ImageGUI extends Observed {
         if (image == null)
             throw new IllegalArgumentException("Null list");
         synchronized (images) { // Added 16-Mar-2016
-            images.remove(image);
+            if (images.remove(image)) {
+                if (image.isStatic())
+                    backgroundDirty = true;
+                else
+                    dynamicImages.remove(image);
+                markDirty(image.getPosition());
+            }
         }
     }
 
@@ -280,7 +448,14 @@ public class ImageGUI extends Observed {
         if (newImages == null)
             throw new IllegalArgumentException("Null list");
         synchronized (images) {
-            images.removeAll(newImages);
+            for (ImageTile i : newImages)
+                if (i != null && images.remove(i)) {
+                    if (i.isStatic())
+                        backgroundDirty = true;
+                    else
+                        dynamicImages.remove(i);
+                    markDirty(i.getPosition());
+                }
         }
     }
 
@@ -299,16 +474,39 @@ public class ImageGUI extends Observed {
                 throw new IllegalArgumentException("Null image name");
             if (image.getPosition() == null)
                 throw new IllegalArgumentException("Null image position");
-            if (image.getLayer() >= maxLevel)
-                maxLevel = image.getLayer() + 1;
-            if (!imageDB.containsKey(image.getName())) {
+            if (!hasSprite(image.getName())) {
                 throw new IllegalArgumentException("No such image in DB " + image.getName());
             }
-            if (images.contains(image)) {
+            if (!images.add(image)) {
                 System.err.println("Attempting to register repeated image: " + image + " (ignoring)");
                 return;
             }
-            images.add(image);
+            if (image.isStatic())
+                backgroundDirty = true;
+            else
+                dynamicImages.add(image);
+            markDirty(image.getPosition());
+        }
+    }
+
+    /**
+     * Tells the window that an image moved from one tile to another: both tiles
+     * are repainted on the next {@link #update()}.
+     */
+    public void imageMoved(ImageTile image, Point2D from, Point2D to) {
+        synchronized (images) {
+            markDirty(from);
+            markDirty(to);
+        }
+    }
+
+    /**
+     * Tells the window that an image changed its name (e.g. a fish turning
+     * around) without moving: its tile is repainted on the next {@link #update()}.
+     */
+    public void imageChanged(ImageTile image) {
+        synchronized (images) {
+            markDirty(image.getPosition());
         }
     }
 
@@ -318,6 +516,9 @@ public class ImageGUI extends Observed {
     public void clearImages() {
         synchronized (images) { // Added 16-Mar-2016
             images.clear();
+            dynamicImages.clear();
+            backgroundDirty = true;
+            markDirty(new Rectangle(0, 0, panel.getWidth(), panel.getHeight()));
         }
     }
 
@@ -335,17 +536,39 @@ public class ImageGUI extends Observed {
         info.setText(message);
     }
    
+    // Dialogs are shown on the Swing thread even when called from the game threads
     public void showMessage(String title, String message) {
-		JOptionPane.showMessageDialog(panel, message, title, JOptionPane.DEFAULT_OPTION);
+    	runOnSwingThread(() -> JOptionPane.showMessageDialog(panel, message, title, JOptionPane.DEFAULT_OPTION));
     }
     
     public String showInputDialog(String title, String message) {
-    	return JOptionPane.showInputDialog(panel, message, title, JOptionPane.DEFAULT_OPTION);
+    	final String[] holder = new String[1];
+    	runOnSwingThread(() -> holder[0] = JOptionPane.showInputDialog(panel, message, title, JOptionPane.DEFAULT_OPTION));
+    	return holder[0];
+    }
+
+    private void runOnSwingThread(Runnable r) {
+    	if (SwingUtilities.isEventDispatchThread()) {
+    		r.run();
+    		return;
+    	}
+    	try {
+    		SwingUtilities.invokeAndWait(r);
+    	} catch (Exception e) {
+    		r.run();
+    	}
     }
 
+    // Scaled copy in the screen's pixel format (keeps transparency), so drawing it is a plain copy
     BufferedImage resizeImage(BufferedImage originalImage, int targetWidth, int targetHeight) throws IOException {
-        BufferedImage resizedImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        int transparency = originalImage.getTransparency();
+        BufferedImage resizedImage = GraphicsEnvironment.isHeadless()
+                ? new BufferedImage(targetWidth, targetHeight, transparency == Transparency.OPAQUE
+                        ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB)
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                        .getDefaultConfiguration().createCompatibleImage(targetWidth, targetHeight, transparency);
         Graphics2D graphics2D = resizedImage.createGraphics();
+        graphics2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
         graphics2D.drawImage(originalImage, 0, 0, targetWidth, targetHeight, null);
         graphics2D.dispose();
         return resizedImage;
@@ -358,14 +581,43 @@ public class ImageGUI extends Observed {
             // System.out.println("Thread " + Thread.currentThread() + "
             // repainting");
             synchronized (images) { // Added 16-Mar-2016
-                for (int j = 0; j != maxLevel; j++)
-                    for (ImageTile i : images) {
-                        if (i.getLayer() == j) {
-                        	Image img = imageDB.get(i.getName()).getImage();
-                        	g.drawImage(img, i.getPosition().getX()*tileWidth, i.getPosition().getY()*tileHeight, frame);
-                        }
-                    }
+                if (backgroundDirty || background == null || background.getWidth() != getWidth()
+                        || background.getHeight() != getHeight())
+                    rebuildBackground();
+                g.drawImage(background, 0, 0, frame);
+                // only the tiles inside the area being repainted
+                Rectangle clip = g.getClipBounds();
+                SpriteAtlas sprites = atlas();
+                for (ImageTile i : dynamicImages) {
+                    int x = i.getPosition().getX()*tileWidth;
+                    int y = i.getPosition().getY()*tileHeight;
+                    if (clip != null && !clip.intersects(x, y, tileWidth, tileHeight))
+                        continue;
+                    drawSprite(g, sprites, i.getName(), x, y);
+                }
+            }
+        }
+
+        // Draws all the static images, in layer order, into the cached background
+        private void rebuildBackground() {
+            int w = Math.max(1, getWidth());
+            int h = Math.max(1, getHeight());
+            if (background == null || background.getWidth() != w || background.getHeight() != h) {
+                GraphicsConfiguration gc = getGraphicsConfiguration();
+                background = (gc != null) ? gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT)
+                        : new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
             }
+            Graphics2D bg = background.createGraphics();
+            bg.setComposite(AlphaComposite.Clear);
+            bg.fillRect(0, 0, w, h);
+            bg.setComposite(AlphaComposite.SrcOver);
+            SpriteAtlas sprites = atlas();
+            for (ImageTile i : images) {
+                if (i.isStatic())
+                    drawSprite(bg, sprites, i.getName(), i.getPosition().getX()*tileWidth, i.getPosition().getY()*tileHeight);
+            }
+            bg.dispose();
+            backgroundDirty = false;
         }
     }
 
@@ -385,25 +637,48 @@ public class ImageGUI extends Observed {
 		}
     }
 
-	private class Ticker extends Thread {
-		
-		public void run() {
-			try {
-				while (true) {
-					sleep(TICK_TIME);
-					tick();
-				}
-			} catch (InterruptedException e) {
-			}
-		}
-	}
 
     /**
      * Force scheduling of a new window paint (this may take a while, it does
      * not necessarily happen immediately after this instruction is issued)
+     * <p>
+     * Only the tiles that changed since the previous call are repainted: those
+     * of the images added or removed, and those reported by
+     * {@link #imageMoved} and {@link #imageChanged}. Several calls before the
+     * Swing thread gets to run are merged into one repaint.
      */
     public void update() {
-        frame.repaint();
+        synchronized (images) {
+            if (dirty == null || repaintPending)
+                return;
+            repaintPending = true;
+        }
+        SwingUtilities.invokeLater(this::repaintDirty);
+    }
+
+    // Runs on the Swing thread: one repaint for everything that changed meanwhile
+    private void repaintDirty() {
+        Rectangle r;
+        synchronized (images) {
+            r = dirty;
+            dirty = null;
+            repaintPending = false;
+        }
+        if (r != null)
+            panel.repaint(r);
+    }
+
+    // Must be called holding the images lock
+    private void markDirty(Point2D p) {
+        if (p != null)
+            markDirty(new Rectangle(p.getX() * tileWidth, p.getY() * tileHeight, tileWidth, tileHeight));
+    }
+
+    private void markDirty(Rectangle r) {
+        if (dirty == null)
+            dirty = new Rectangle(r);
+        else
+            dirty.add(r);
     }
 
     /**
@@ -411,9 +686,12 @@ public class ImageGUI extends Observed {
      */
     public void dispose() {
         images.clear();
+        dynamicImages.clear();
         imageDB.clear();
+        spriteLoader.shutdownNow();
         frame.dispose();
         keywatcher.end(); // added dec 2022
+        ticker.shutdown();
     }
 
     /**
@@ -455,12 +733,53 @@ public class ImageGUI extends Observed {
     	return JOptionPane.showInputDialog(question);
     }
 
-	public boolean wasKeyPressed() {
+	public synchronized boolean wasKeyPressed() {
 		return keyPressed;
 	}
 
 	public int getTicks() {
 		return ticks;
 	}
+
+	/**
+	 * Changes the time between ticks (500 ms by default).
+	 */
+	public void setTickTime(long millis) {
+		ticker.setPeriod(millis);
+	}
+
+	/**
+	 * Maximum number of ticks sent back to back after the game was blocked
+	 * (e.g. by a dialog); older missed ticks are dropped.
+	 */
+	public void setMaxCatchUp(int ticks) {
+		ticker.setMaxCatchUp(ticks);
+	}
+
+	/**
+	 * @param scale 2.0 makes time run twice as fast, 0.5 at half speed
+	 */
+	public void setTimeScale(double scale) {
+		ticker.setTimeScale(scale);
+	}
+
+	public double getTimeScale() {
+		return ticker.getTimeScale();
+	}
+
+	/**
+	 * Moves to the next speed (1x, 2x, 4x, 0.5x, then back to 1x).
+	 *
+	 * @return the new time scale
+	 */
+	public double cycleTimeScale() {
+		double current = ticker.getTimeScale();
+		int next = 0;
+		for (int i = 0; i < TIME_SCALES.length; i++)
+			if (TIME_SCALES[i] == current)
+				next = (i + 1) % TIME_SCALES.length;
+		ticker.setTimeScale(TIME_SCALES[next]);
+		return TIME_SCALES[next];
+	}
     
 }
@@ -46,4 +46,16 @@ public interface ImageTile {
 	 */
 	int getLayer();
 
+	/**
+	 * Tells the GUI that this image never moves nor changes while it is
+	 * displayed (e.g. water and walls). Static images are drawn once into a
+	 * cached background, beneath all the other images, which is only rebuilt
+	 * when a static image is added or removed.
+	 * 
+	 * @return true for images that never change (false by default).
+	 */
+	default boolean isStatic() {
+		return false;
+	}
+
 }
@@ -0,0 +1,113 @@
+package pt.iscte.poo.gui;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of key presses, between the threads that produce
+ * input (the Swing key listener, bots, scripts) and the thread that runs the
+ * game, which drains it on every update.
+ * <p>
+ * Array-based ring with one sequence number per slot (Vyukov's bounded
+ * MPMC queue): producers and consumers only compete with a CAS on the tail
+ * and head counters, and never block. When the queue is full the new event
+ * is refused and counted in {@link #getDropped()}.
+ */
+public class InputQueue {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final int mask;
+	private final KeyInput[] items;
+	// seq == position: the slot is free for the producer at that position;
+	// seq == position + 1: the slot holds the item for the consumer at that position
+	private final AtomicLongArray sequences;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	public InputQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity maximum number of pending events (rounded up to a power of two)
+	 */
+	public InputQueue(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+		this.mask = size - 1;
+		this.items = new KeyInput[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			sequences.set(i, i);
+	}
+
+	/**
+	 * Adds an event at the end of the queue.
+	 *
+	 * @return false if the queue was full (the event is lost)
+	 */
+	public boolean offer(KeyInput input) {
+		long pos = tail.get();
+		int slot;
+		while (true) {
+			slot = (int) (pos & mask);
+			long diff = sequences.get(slot) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1))
+					break;
+				pos = tail.get();
+			} else if (diff < 0) {
+				dropped.incrementAndGet();
+				return false;
+			} else {
+				pos = tail.get();
+			}
+		}
+		items[slot] = input;
+		sequences.set(slot, pos + 1); // publishes the item
+		return true;
+	}
+
+	/**
+	 * Removes the oldest event.
+	 *
+	 * @return the event, or null if the queue is empty
+	 */
+	public KeyInput poll() {
+		long pos = head.get();
+		int slot;
+		while (true) {
+			slot = (int) (pos & mask);
+			long diff = sequences.get(slot) - (pos + 1);
+			if (diff == 0) {
+				if (head.compareAndSet(pos, pos + 1))
+					break;
+				pos = head.get();
+			} else if (diff < 0) {
+				return null;
+			} else {
+				pos = head.get();
+			}
+		}
+		KeyInput input = items[slot];
+		items[slot] = null;
+		sequences.set(slot, pos + mask + 1); // frees the slot for the next lap
+		return input;
+	}
+
+	public boolean isEmpty() {
+		return head.get() >= tail.get();
+	}
+
+	/**
+	 * @return number of events refused because the queue was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+}
@@ -0,0 +1,39 @@
+package pt.iscte.poo.gui;
+
+/**
+ * A key press, stamped with the moment it happened: the
+ * {@link System#nanoTime()} value and the number of ticks the GUI had sent
+ * at that point.
+ */
+public final class KeyInput {
+
+	private final int keyCode;
+	private final long nanoTime;
+	private final int tick;
+
+	public KeyInput(int keyCode, long nanoTime, int tick) {
+		this.keyCode = keyCode;
+		this.nanoTime = nanoTime;
+		this.tick = tick;
+	}
+
+	/**
+	 * @return the key code, as in {@link java.awt.event.KeyEvent}
+	 */
+	public int getKeyCode() {
+		return keyCode;
+	}
+
+	public long getNanoTime() {
+		return nanoTime;
+	}
+
+	public int getTick() {
+		return tick;
+	}
+
+	@Override
+	public String toString() {
+		return "KeyInput[" + keyCode + " @ tick " + tick + "]";
+	}
+}
@@ -0,0 +1,279 @@
+package pt.iscte.poo.gui;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Many sprites packed into a single image, plus the rectangle that each one
+ * occupies in it (by image name). Drawing a sprite copies a sub-rectangle of
+ * the atlas, so the renderer works with one image instead of one per sprite.
+ * <p>
+ * Sprites are packed in shelves: sorted by height, placed left to right, and
+ * a new shelf is opened below when the current one is full.
+ * <p>
+ * The atlas can be built ahead of time with {@link #main(String[])}, which
+ * writes {@value #IMAGE_FILE} and {@value #INDEX_FILE} (one line
+ * "name x y width height" per sprite) into the {@value #DEFAULT_DIR} folder.
+ */
+public class SpriteAtlas {
+
+	public static final String DEFAULT_DIR = "atlas";
+	public static final String IMAGE_FILE = "sprites.png";
+	public static final String INDEX_FILE = "sprites.txt";
+
+	// Transparent gap around each sprite, so a scaled draw never picks up its neighbours
+	private static final int PADDING = 1;
+
+	private final BufferedImage image;
+	private final Map<String, Rectangle> index;
+
+	private SpriteAtlas(BufferedImage image, Map<String, Rectangle> index) {
+		this.image = image;
+		this.index = index;
+	}
+
+	/**
+	 * Packs the given sprites into a new atlas.
+	 */
+	public static SpriteAtlas pack(Map<String, BufferedImage> sprites) {
+		List<String> names = new ArrayList<>(sprites.keySet());
+		Collections.sort(names);
+		names.sort((a, b) -> sprites.get(b).getHeight() - sprites.get(a).getHeight());
+
+		long area = 0;
+		int widest = 1;
+		for (BufferedImage s : sprites.values()) {
+			area += (long) (s.getWidth() + PADDING) * (s.getHeight() + PADDING);
+			widest = Math.max(widest, s.getWidth() + PADDING);
+		}
+		int width = Math.max(widest, (int) Math.ceil(Math.sqrt(area)));
+
+		Map<String, Rectangle> index = new LinkedHashMap<>();
+		int x = 0, y = 0, shelfHeight = 0;
+		for (String name : names) {
+			BufferedImage s = sprites.get(name);
+			if (x + s.getWidth() + PADDING > width) {
+				x = 0;
+				y += shelfHeight;
+				shelfHeight = 0;
+			}
+			index.put(name, new Rectangle(x, y, s.getWidth(), s.getHeight()));
+			x += s.getWidth() + PADDING;
+			shelfHeight = Math.max(shelfHeight, s.getHeight() + PADDING);
+		}
+
+		BufferedImage image = new BufferedImage(width, Math.max(1, y + shelfHeight), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		for (Map.Entry<String, Rectangle> e : index.entrySet())
+			g.drawImage(sprites.get(e.getKey()), e.getValue().x, e.getValue().y, null);
+		g.dispose();
+		return new SpriteAtlas(image, index);
+	}
+
+	/**
+	 * Reads an atlas written by {@link #save(File)}.
+	 */
+	public static SpriteAtlas load(File dir) throws IOException {
+		BufferedImage image = ImageIO.read(new File(dir, IMAGE_FILE));
+		if (image == null)
+			throw new IOException("Not an image: " + new File(dir, IMAGE_FILE));
+		Map<String, Rectangle> index = readIndex(new File(dir, INDEX_FILE));
+		for (Map.Entry<String, Rectangle> e : index.entrySet())
+			if (!new Rectangle(image.getWidth(), image.getHeight()).contains(e.getValue()))
+				throw new IOException("Sprite " + e.getKey() + " outside the atlas image");
+		return new SpriteAtlas(image, index);
+	}
+
+	private static Map<String, Rectangle> readIndex(File file) throws IOException {
+		Map<String, Rectangle> index = new LinkedHashMap<>();
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] f = line.split("\\s+");
+				if (f.length != 5)
+					throw new IOException("Bad line in " + file + ": " + line);
+				try {
+					index.put(f[0], new Rectangle(Integer.parseInt(f[1]), Integer.parseInt(f[2]),
+							Integer.parseInt(f[3]), Integer.parseInt(f[4])));
+				} catch (NumberFormatException e) {
+					throw new IOException("Bad line in " + file + ": " + line);
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the atlas image and its index into the given folder.
+	 */
+	public void save(File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Cannot create " + dir);
+		BufferedImage out = image;
+		if (out.getType() != BufferedImage.TYPE_INT_ARGB) {
+			out = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = out.createGraphics();
+			g.drawImage(image, 0, 0, null);
+			g.dispose();
+		}
+		ImageIO.write(out, "png", new File(dir, IMAGE_FILE));
+		try (PrintWriter w = new PrintWriter(new File(dir, INDEX_FILE))) {
+			w.println("# name x y width height");
+			for (Map.Entry<String, Rectangle> e : index.entrySet()) {
+				Rectangle r = e.getValue();
+				w.println(e.getKey() + " " + r.x + " " + r.y + " " + r.width + " " + r.height);
+			}
+		}
+	}
+
+	/**
+	 * Whether the atlas in the given folder can be used instead of the source
+	 * images: it exists, is newer than all of them, has exactly the same
+	 * names, and every sprite has the given size.
+	 */
+	public static boolean isUpToDate(File dir, File[] sources, int spriteWidth, int spriteHeight) {
+		File imageFile = new File(dir, IMAGE_FILE);
+		File indexFile = new File(dir, INDEX_FILE);
+		if (sources == null || !imageFile.isFile() || !indexFile.isFile())
+			return false;
+		long built = Math.min(imageFile.lastModified(), indexFile.lastModified());
+		Map<String, Rectangle> index;
+		try {
+			index = readIndex(indexFile);
+		} catch (IOException e) {
+			return false;
+		}
+		if (index.size() != sources.length)
+			return false;
+		for (File f : sources) {
+			Rectangle r = index.get(baseName(f));
+			if (r == null || f.lastModified() > built || r.width != spriteWidth || r.height != spriteHeight)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * A copy in the screen's pixel format, which Java2D can draw (and
+	 * accelerate) without converting.
+	 */
+	public SpriteAtlas toCompatible() {
+		if (GraphicsEnvironment.isHeadless())
+			return this;
+		BufferedImage copy = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration()
+				.createCompatibleImage(image.getWidth(), image.getHeight(), Transparency.TRANSLUCENT);
+		Graphics2D g = copy.createGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return new SpriteAtlas(copy, index);
+	}
+
+	/**
+	 * Draws a sprite with its top left corner at (x, y).
+	 *
+	 * @return false if there is no sprite with that name in the atlas
+	 */
+	public boolean draw(Graphics g, String name, int x, int y, ImageObserver observer) {
+		Rectangle r = index.get(name);
+		if (r == null)
+			return false;
+		g.drawImage(image, x, y, x + r.width, y + r.height, r.x, r.y, r.x + r.width, r.y + r.height, observer);
+		return true;
+	}
+
+	/**
+	 * @return the sprite as a view of the atlas image (shares its pixels), or null
+	 */
+	public BufferedImage getSprite(String name) {
+		Rectangle r = index.get(name);
+		return r == null ? null : image.getSubimage(r.x, r.y, r.width, r.height);
+	}
+
+	public boolean contains(String name) {
+		return index.containsKey(name);
+	}
+
+	/**
+	 * @return where the sprite is in the atlas image, or null
+	 */
+	public Rectangle getBounds(String name) {
+		Rectangle r = index.get(name);
+		return r == null ? null : new Rectangle(r);
+	}
+
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	public int size() {
+		return index.size();
+	}
+
+	private static String baseName(File f) {
+		String n = f.getName();
+		return n.lastIndexOf('.') == -1 ? n : n.substring(0, n.lastIndexOf('.'));
+	}
+
+	// Smooth resize to exactly width x height, keeping transparency
+	private static BufferedImage scale(BufferedImage src, int width, int height) {
+		BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = out.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(src, 0, 0, width, height, null);
+		g.dispose();
+		return out;
+	}
+
+	/**
+	 * Build step: packs every image of a folder into an atlas.
+	 * <p>
+	 * Arguments (all optional): source folder (default "images"), output
+	 * folder (default {@value #DEFAULT_DIR}), and sprite size in pixels
+	 * (default 48, the ImageGUI tile size; 0 keeps each image's own size).
+	 */
+	public static void main(String[] args) throws IOException {
+		File source = new File(args.length > 0 ? args[0] : "images");
+		File target = new File(args.length > 1 ? args[1] : DEFAULT_DIR);
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : 48;
+
+		File[] files = source.listFiles(File::isFile);
+		if (files == null)
+			throw new IOException("No such folder: " + source);
+		Map<String, BufferedImage> sprites = new TreeMap<>();
+		for (File f : files) {
+			BufferedImage img = ImageIO.read(f);
+			if (img == null) {
+				System.err.println("Skipping " + f + ": not an image");
+				continue;
+			}
+			sprites.put(baseName(f), size > 0 ? scale(img, size, size) : img);
+		}
+		SpriteAtlas atlas = pack(sprites);
+		atlas.save(target);
+		System.out.println(atlas.size() + " sprites -> " + new File(target, IMAGE_FILE) + " ("
+				+ atlas.image.getWidth() + "x" + atlas.image.getHeight() + ")");
+	}
+}
@@ -0,0 +1,114 @@
+package pt.iscte.poo.gui;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-timestep clock: runs an action once per period, on its own thread.
+ * <p>
+ * Ticks are scheduled on a grid measured with {@link System#nanoTime()}, so
+ * the time spent in the action (or a late wake-up) does not accumulate
+ * drift. When the thread falls behind (e.g. the action was blocked by a modal
+ * dialog) it runs at most {@code maxCatchUp} ticks in a row and drops the
+ * rest, instead of firing a long burst.
+ * <p>
+ * The time scale speeds the clock up (&gt; 1) or slows it down (&lt; 1)
+ * without changing the nominal period.
+ */
+public class Ticker extends Thread {
+
+	public static final int DEFAULT_MAX_CATCH_UP = 3;
+
+	private final Runnable action;
+	private volatile long periodNanos;
+	private volatile double timeScale = 1.0;
+	private volatile int maxCatchUp = DEFAULT_MAX_CATCH_UP;
+	private volatile boolean running = true;
+	private volatile long dropped = 0;
+
+	/**
+	 * @param name         name of the thread
+	 * @param periodMillis nominal time between ticks
+	 * @param action       what to run on each tick
+	 */
+	public Ticker(String name, long periodMillis, Runnable action) {
+		super(name);
+		this.action = action;
+		this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+		setDaemon(true);
+	}
+
+	@Override
+	public void run() {
+		long last = System.nanoTime();
+		while (running) {
+			long period = scaledPeriod();
+			long now = System.nanoTime();
+			long next = last + period;
+			if (now < next) {
+				LockSupport.parkNanos(this, next - now);
+				continue; // re-read the period: it may have changed while parked
+			}
+			long due = (now - last) / period;
+			long run = Math.min(due, maxCatchUp);
+			dropped += due - run;
+			for (long i = 0; i < run && running; i++)
+				action.run();
+			last += due * period;
+		}
+	}
+
+	private long scaledPeriod() {
+		return Math.max(1L, (long) (periodNanos / timeScale));
+	}
+
+	/**
+	 * Changes the nominal time between ticks (the tick rate).
+	 */
+	public void setPeriod(long periodMillis) {
+		if (periodMillis <= 0)
+			throw new IllegalArgumentException("period must be positive: " + periodMillis);
+		this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+		LockSupport.unpark(this);
+	}
+
+	public long getPeriod() {
+		return TimeUnit.NANOSECONDS.toMillis(periodNanos);
+	}
+
+	/**
+	 * @param scale 2.0 runs twice as fast, 0.5 at half speed
+	 */
+	public void setTimeScale(double scale) {
+		if (!(scale > 0))
+			throw new IllegalArgumentException("time scale must be positive: " + scale);
+		this.timeScale = scale;
+		LockSupport.unpark(this);
+	}
+
+	public double getTimeScale() {
+		return timeScale;
+	}
+
+	/**
+	 * @param maxCatchUp maximum number of ticks run back to back when late
+	 */
+	public void setMaxCatchUp(int maxCatchUp) {
+		this.maxCatchUp = Math.max(1, maxCatchUp);
+	}
+
+	/**
+	 * @return number of ticks skipped so far because the clock fell behind
+	 */
+	public long getDroppedTicks() {
+		return dropped;
+	}
+
+	/**
+	 * Stops the clock; the current tick (if any) is allowed to finish.
+	 */
+	public void shutdown() {
+		running = false;
+		LockSupport.unpark(this);
+	}
+}
@@ -0,0 +1,124 @@
+package pt.iscte.poo.gui;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The images shown by ImageGUI.
+ * <p>
+ * Images are found by identity (an {@link IdentityHashMap}, the same
+ * "exact same Object" rule as the public API), and each one is also a node
+ * in the doubly linked list of its layer. Add, remove and contains are O(1),
+ * and iterating visits the images in paint order (layer by layer, and in the
+ * order they were added within a layer), with no sorting.
+ * <p>
+ * Not thread-safe: ImageGUI guards it with its own lock.
+ */
+class TileStore implements Iterable<ImageTile> {
+
+	// One image, linked into the list of its layer
+	private static final class Node {
+		final ImageTile image;
+		final int layer; // the layer when it was added (used to unlink it)
+		Node prev, next;
+
+		Node(ImageTile image, int layer) {
+			this.image = image;
+			this.layer = layer;
+		}
+	}
+
+	// first and last node of each layer
+	private final List<Node> heads = new ArrayList<Node>();
+	private final List<Node> tails = new ArrayList<Node>();
+	private final Map<ImageTile, Node> nodes = new IdentityHashMap<ImageTile, Node>();
+	private int modCount = 0;
+
+	/**
+	 * @return false if the image was already there (nothing changes)
+	 */
+	public boolean add(ImageTile image) {
+		if (nodes.containsKey(image))
+			return false;
+		int layer = Math.max(0, image.getLayer());
+		while (heads.size() <= layer) {
+			heads.add(null);
+			tails.add(null);
+		}
+		Node n = new Node(image, layer);
+		Node tail = tails.get(layer);
+		if (tail == null) {
+			heads.set(layer, n);
+		} else {
+			tail.next = n;
+			n.prev = tail;
+		}
+		tails.set(layer, n);
+		nodes.put(image, n);
+		modCount++;
+		return true;
+	}
+
+	public boolean contains(ImageTile image) {
+		return nodes.containsKey(image);
+	}
+
+	public boolean remove(ImageTile image) {
+		Node n = nodes.remove(image);
+		if (n == null)
+			return false;
+		if (n.prev == null)
+			heads.set(n.layer, n.next);
+		else
+			n.prev.next = n.next;
+		if (n.next == null)
+			tails.set(n.layer, n.prev);
+		else
+			n.next.prev = n.prev;
+		modCount++;
+		return true;
+	}
+
+	public void clear() {
+		nodes.clear();
+		heads.clear();
+		tails.clear();
+		modCount++;
+	}
+
+	public int size() {
+		return nodes.size();
+	}
+
+	@Override
+	public Iterator<ImageTile> iterator() {
+		return new Iterator<ImageTile>() {
+			private final int expected = modCount;
+			private int layer = -1;
+			private Node next = null;
+
+			@Override
+			public boolean hasNext() {
+				if (expected != modCount)
+					throw new ConcurrentModificationException();
+				while (next == null && layer + 1 < heads.size())
+					next = heads.get(++layer);
+				return next != null;
+			}
+
+			@Override
+			public ImageTile next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Node n = next;
+				next = n.next;
+				return n.image;
+			}
+		};
+	}
+}
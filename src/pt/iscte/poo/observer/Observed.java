@@ -14,8 +14,13 @@ public class Observed {
 		observers.remove(o);
 	}
 	
-	synchronized public void notifyObservers() {
-		for (Observer o: observers) {
+	// The observers are called without holding the lock
+	public void notifyObservers() {
+		List<Observer> current;
+		synchronized (this) {
+			current = new ArrayList<Observer>(observers);
+		}
+		for (Observer o: current) {
 			o.update(this);
 		}
 	}
@@ -0,0 +1,184 @@
+package replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Uma sessão gravada: semente, sala inicial e a sequência de entradas do
+ * motor (tick, tecla). Com isto o jogo repete-se exatamente.
+ * <p>
+ * Formato (.rpl):
+ * 
+ * <pre>
+ * int    MAGIC ("FRPL")
+ * short  versão
+ * long   semente
+ * UTF    sala inicial
+ * long   hash da sala no fim (Room.stateHash; 0 = desconhecido)   [versão 2]
+ * int    número de eventos
+ * por evento: varint (tick - tick anterior), varint (tecla + 1, 0 = sem tecla)
+ * </pre>
+ */
+public class Replay {
+
+	public static final String EXTENSION = ".rpl";
+	static final int MAGIC = 0x4652504C; // "FRPL"
+	static final short VERSION = 2;
+
+	public static final int NO_KEY = -1;
+
+	private final long seed;
+	private final String startRoom;
+	private final long finalHash;
+	private final int[] ticks;
+	private final int[] keys;
+
+	public Replay(long seed, String startRoom, int[] ticks, int[] keys) {
+		this(seed, startRoom, 0L, ticks, keys);
+	}
+
+	public Replay(long seed, String startRoom, long finalHash, int[] ticks, int[] keys) {
+		if (ticks.length != keys.length)
+			throw new IllegalArgumentException("ticks e teclas com tamanhos diferentes");
+		this.seed = seed;
+		this.startRoom = startRoom;
+		this.finalHash = finalHash;
+		this.ticks = ticks;
+		this.keys = keys;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public String getStartRoom() {
+		return startRoom;
+	}
+
+	// Hash da sala quando a gravação acabou; 0 se não se sabe
+	public long getFinalHash() {
+		return finalHash;
+	}
+
+	public int getEventCount() {
+		return ticks.length;
+	}
+
+	public int getTick(int i) {
+		return ticks[i];
+	}
+
+	// NO_KEY se o evento foi só passagem de tempo
+	public int getKey(int i) {
+		return keys[i];
+	}
+
+	public void write(File f) throws IOException {
+		File dir = f.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists())
+			dir.mkdirs();
+		try (OutputStream out = new FileOutputStream(f)) {
+			write(out);
+		}
+	}
+
+	public void write(OutputStream os) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeLong(seed);
+		out.writeUTF(startRoom);
+		out.writeLong(finalHash);
+		out.writeInt(ticks.length);
+		int last = 0;
+		for (int i = 0; i < ticks.length; i++) {
+			writeVarInt(out, zigZag(ticks[i] - last));
+			writeVarInt(out, keys[i] + 1);
+			last = ticks[i];
+		}
+		out.flush();
+	}
+
+	public static Replay read(File f) throws IOException {
+		try (InputStream in = new FileInputStream(f)) {
+			return read(in);
+		}
+	}
+
+	public static Replay read(InputStream is) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+		if (in.readInt() != MAGIC)
+			throw new IOException("não é um replay");
+		short version = in.readShort();
+		if (version < 1 || version > VERSION)
+			throw new IOException("versão de replay não suportada: " + version);
+
+		long seed = in.readLong();
+		String startRoom = in.readUTF();
+		long finalHash = (version >= 2) ? in.readLong() : 0L;
+		int n = in.readInt();
+		if (n < 0)
+			throw new IOException("número de eventos inválido: " + n);
+
+		int[] ticks = new int[n];
+		int[] keys = new int[n];
+		int last = 0;
+		for (int i = 0; i < n; i++) {
+			last += unZigZag(readVarInt(in));
+			ticks[i] = last;
+			keys[i] = readVarInt(in) - 1;
+		}
+		return new Replay(seed, startRoom, finalHash, ticks, keys);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Replay))
+			return false;
+		Replay r = (Replay) o;
+		return seed == r.seed && startRoom.equals(r.startRoom) && finalHash == r.finalHash && Arrays.equals(ticks, r.ticks)
+				&& Arrays.equals(keys, r.keys);
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(seed) * 31 + Arrays.hashCode(ticks);
+	}
+
+	//Varints (7 bits por byte), como no protobuf
+	private static void writeVarInt(DataOutputStream out, int v) throws IOException {
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return v;
+		}
+		throw new IOException("varint inválido");
+	}
+
+	private static int zigZag(int v) {
+		return (v << 1) ^ (v >> 31);
+	}
+
+	private static int unZigZag(int v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+}
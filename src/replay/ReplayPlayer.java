@@ -0,0 +1,107 @@
+package replay;
+
+import java.io.File;
+import java.io.IOException;
+
+import pt.iscte.poo.game.GameEngine;
+import pt.iscte.poo.gui.HeadlessDisplay;
+
+/**
+ * Repete um replay num motor sem janela, tão depressa quanto o CPU deixar.
+ * Serve para validar highscores, reproduzir bugs e comparar regras novas
+ * com sessões antigas.
+ * <p>
+ * Uso: {@code java replay.ReplayPlayer data/replays/replay-xxx.rpl [...]}
+ */
+public class ReplayPlayer {
+
+	// Resultado de uma repetição
+	public static class Result {
+		private final String room;
+		private final boolean ended;
+		private final int moves;
+		private final int ticks;
+		private final long stateHash;
+		private final long nanos;
+
+		Result(GameEngine engine, long nanos) {
+			this.room = (engine.getCurrentRoom() != null) ? engine.getCurrentRoom().getName() : null;
+			this.ended = engine.isGameEnded();
+			this.moves = engine.getTotalMoves();
+			this.ticks = engine.getTicks();
+			this.stateHash = (engine.getCurrentRoom() != null) ? engine.getCurrentRoom().stateHash() : 0L;
+			this.nanos = nanos;
+		}
+
+		public String getRoom() {
+			return room;
+		}
+
+		public boolean isGameEnded() {
+			return ended;
+		}
+
+		public int getMoves() {
+			return moves;
+		}
+
+		public int getTicks() {
+			return ticks;
+		}
+
+		public long getStateHash() {
+			return stateHash;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		@Override
+		public String toString() {
+			return "room=" + room + " ended=" + ended + " moves=" + moves + " ticks=" + ticks + " hash="
+					+ Long.toHexString(stateHash);
+		}
+	}
+
+	// Motor novo (sem janela nem highscores) com a semente e sala do replay
+	public static GameEngine newEngine(Replay replay) {
+		return new GameEngine(new HeadlessDisplay(), null, replay.getSeed(), replay.getStartRoom());
+	}
+
+	public static Result play(Replay replay) {
+		GameEngine engine = newEngine(replay);
+		long t0 = System.nanoTime();
+		play(replay, engine);
+		return new Result(engine, System.nanoTime() - t0);
+	}
+
+	public static void play(Replay replay, GameEngine engine) {
+		int n = replay.getEventCount();
+		for (int i = 0; i < n; i++) {
+			int key = replay.getKey(i);
+			engine.step(key == Replay.NO_KEY ? null : key, replay.getTick(i));
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Uso: ReplayPlayer <ficheiro.rpl>...");
+			return;
+		}
+		for (String arg : args) {
+			try {
+				Replay replay = Replay.read(new File(arg));
+				Result r = play(replay);
+				double ms = r.getNanos() / 1e6;
+				String check = "";
+				if (replay.getFinalHash() != 0L)
+					check = (replay.getFinalHash() == r.getStateHash()) ? " [OK]" : " [DIFERENTE do gravado]";
+				System.out.printf("%s: %s%s (%d eventos em %.1f ms, %.0f eventos/s)%n", arg, r, check,
+						replay.getEventCount(), ms, replay.getEventCount() / Math.max(ms / 1000, 1e-9));
+			} catch (IOException e) {
+				System.err.println(arg + ": erro a ler replay: " + e.getMessage());
+			}
+		}
+	}
+}
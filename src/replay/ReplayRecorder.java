@@ -0,0 +1,74 @@
+package replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Vai guardando as entradas do motor durante uma sessão. Cada chamada custa
+ * um par de escritas em arrays; o ficheiro só é escrito no fim.
+ */
+public class ReplayRecorder {
+
+	public static final String DEFAULT_DIR = "data/replays";
+
+	private final long seed;
+	private final String startRoom;
+	private int[] ticks = new int[1024];
+	private int[] keys = new int[1024];
+	private int size = 0;
+	private long finalHash = 0L;
+	private boolean saved = false;
+
+	public ReplayRecorder(long seed, String startRoom) {
+		this.seed = seed;
+		this.startRoom = startRoom;
+	}
+
+	public void record(int tick, Integer key) {
+		if (size == ticks.length) {
+			ticks = Arrays.copyOf(ticks, size * 2);
+			keys = Arrays.copyOf(keys, size * 2);
+		}
+		ticks[size] = tick;
+		keys[size] = (key != null) ? key : Replay.NO_KEY;
+		size++;
+		saved = false;
+	}
+
+	// Estado da sala no fim, para o ReplayPlayer confirmar que chega ao mesmo sítio
+	public void setFinalHash(long finalHash) {
+		this.finalHash = finalHash;
+		saved = false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Replay toReplay() {
+		return new Replay(seed, startRoom, finalHash, Arrays.copyOf(ticks, size), Arrays.copyOf(keys, size));
+	}
+
+	// Grava em data/replays; não volta a gravar se nada mudou desde a última vez
+	public File save() {
+		return save(new File(DEFAULT_DIR));
+	}
+
+	public File save(File dir) {
+		if (saved || size == 0)
+			return null;
+		String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		File f = new File(dir, "replay-" + stamp + Replay.EXTENSION);
+		try {
+			toReplay().write(f);
+			saved = true;
+			return f;
+		} catch (IOException e) {
+			System.err.println("Não foi possível gravar o replay: " + e.getMessage());
+			return null;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package solver;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import pt.iscte.poo.game.Room;
+
+/**
+ * Dicas para o jogo: a melhor próxima tecla a partir do estado atual da sala.
+ * <p>
+ * O estado é copiado na thread do jogo (só codificar a sala) e a pesquisa
+ * corre numa thread à parte, com um limite de tempo. As respostas ficam numa
+ * cache LRU pelo estado codificado ({@link StateCodec#key}), que já inclui o
+ * peixe controlado; quando a pesquisa encontra uma solução, guarda também a dica
+ * de cada estado do caminho, por isso seguir as dicas é instantâneo.
+ */
+public class HintEngine {
+
+	public static final long DEFAULT_BUDGET_MS = 200;
+	private static final int CACHE_SIZE = 512;
+	// Pela ordem de Solver.ACTION_KEYS
+	private static final String[] KEY_NAMES = { "UP", "DOWN", "LEFT", "RIGHT", "SPACE (switch fish)", "wait" };
+
+	private static final ExecutorService SEARCH = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "hint-search");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final long budgetNanos;
+	private final Map<String, String> cache = new LinkedHashMap<String, String>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+	// Estados com uma pesquisa já em curso (não se repete o pedido)
+	private final Set<String> searching = new HashSet<>();
+
+	public HintEngine() {
+		this(DEFAULT_BUDGET_MS);
+	}
+
+	public HintEngine(long budgetMillis) {
+		this.budgetNanos = budgetMillis * 1_000_000L;
+	}
+
+	/**
+	 * Pede uma dica para o estado atual da sala. Se já estiver na cache,
+	 * onReady é chamado logo; senão é chamado mais tarde, na thread da
+	 * pesquisa. Nunca bloqueia quem chama.
+	 *
+	 * @param room          sala em jogo (não é alterada)
+	 * @param bigControlled true se o peixe controlado é o grande
+	 * @param onReady       recebe o texto da dica (ex: "LEFT")
+	 */
+	public void request(Room room, boolean bigControlled, Consumer<String> onReady) {
+		// cópia do estado feita aqui, antes de a sala voltar a mudar
+		Solver solver = solverFor(room, bigControlled);
+		if (solver == null) {
+			onReady.accept("unavailable");
+			return;
+		}
+		String key = solver.codec.key(solver.initial);
+		synchronized (this) {
+			String hint = cache.get(key);
+			if (hint != null) {
+				onReady.accept(hint);
+				return;
+			}
+			if (!searching.add(key))
+				return;
+		}
+		SEARCH.execute(() -> {
+			String hint;
+			try {
+				hint = search(solver, key);
+			} catch (Exception e) {
+				hint = "unavailable";
+			}
+			synchronized (this) {
+				searching.remove(key);
+			}
+			onReady.accept(hint);
+		});
+	}
+
+	// Dica em cache para este estado, ou null
+	public String cached(Room room, boolean bigControlled) {
+		Solver solver = solverFor(room, bigControlled);
+		if (solver == null)
+			return null;
+		String key = solver.codec.key(solver.initial);
+		synchronized (this) {
+			return cache.get(key);
+		}
+	}
+
+	// null se a sala não cabe no solver (ver StateCodec.MAX_SIZE)
+	private static Solver solverFor(Room room, boolean bigControlled) {
+		try {
+			return new Solver(room, bigControlled ? StateCodec.BIG : StateCodec.SMALL);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private String search(Solver solver, String key) {
+		Solver.Solution s = solver.solve(Solver.DEFAULT_MAX_STATES, budgetNanos);
+		if (!s.isSolved()) {
+			String hint = s.isExhausted() ? "no way out from here, press R" : "none found in time";
+			if (s.isExhausted())
+				put(key, hint);
+			return hint;
+		}
+		remember(solver, s.getKeys());
+		String hint = hintFrom(s.getKeys(), 0);
+		put(key, hint);
+		return hint;
+	}
+
+	// Percorre a solução e guarda a dica de cada estado pelo caminho
+	private void remember(Solver solver, int[] keys) {
+		byte[] state = solver.initial;
+		for (int i = 0; i < keys.length && state != null; i++) {
+			put(solver.codec.key(state), hintFrom(keys, i));
+			state = solver.successor(state, actionOf(keys[i]));
+		}
+	}
+
+	private synchronized void put(String key, String hint) {
+		cache.put(key, hint);
+	}
+
+	// Tecla a carregar na posição i da solução ("wait" se é para deixar passar um tick)
+	private static String hintFrom(int[] keys, int i) {
+		return i < keys.length ? KEY_NAMES[actionOf(keys[i])] : "wait";
+	}
+
+	private static int actionOf(int key) {
+		for (int a = 0; a < Solver.ACTION_KEYS.length; a++)
+			if (Solver.ACTION_KEYS[a] == key)
+				return a;
+		return Solver.TICK;
+	}
+}
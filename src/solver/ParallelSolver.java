@@ -0,0 +1,204 @@
+package solver;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import pt.iscte.poo.game.Room;
+
+/**
+ * A mesma pesquisa do Solver (mesmas ações, mesmo custo, mesmas regras), mas
+ * cada nível da BFS é expandido em paralelo num ForkJoinPool: a fronteira é
+ * partida ao meio recursivamente e os estados novos vão para um
+ * StripedStateStore partilhado.
+ * <p>
+ * Como no Solver, cada nível fecha primeiro os ticks (custo 0) e só depois
+ * expande as teclas, por isso a solução continua a ser a mais curta.
+ * <p>
+ * Uso: {@code java solver.ParallelSolver [pasta de salas] [-max estados] [-threads n]}
+ */
+public class ParallelSolver extends Solver {
+
+	// Abaixo disto não compensa dividir mais a fronteira
+	private static final int CHUNK = 32;
+
+	private final ForkJoinPool pool;
+
+	public ParallelSolver(Room room, ForkJoinPool pool) {
+		super(room);
+		this.pool = pool;
+	}
+
+	// solve(maxStates) do Solver vem aqui ter, sem limite de tempo. O prazo é
+	// visto entre níveis e em cada estado expandido pelas tarefas
+	@Override
+	public Solution solve(int maxStates, long budgetNanos) {
+		long t0 = System.nanoTime();
+		StripedStateStore visited = new StripedStateStore();
+		int start = visited.add(initial, -1, (byte) -1);
+		if (isGoal(initial))
+			return new Solution(getRoomName(), new int[0], 1, 0, System.nanoTime() - t0, false);
+
+		Search search = new Search(visited, maxStates, t0, budgetNanos);
+		int[] layer = { start };
+		while (layer.length > 0) {
+			// 1) ticks: repetir até não aparecerem estados novos neste nível
+			int[] pending = layer;
+			List<int[]> parts = new ArrayList<>();
+			parts.add(layer);
+			while (pending.length > 0 && !search.stopped() && !search.outOfTime()) {
+				pending = pool.invoke(new Expand(search, pending, 0, pending.length, TICK, TICK + 1));
+				parts.add(pending);
+			}
+			if (search.stopped())
+				break;
+
+			// 2) teclas: o nível seguinte
+			int[] all = concat(parts);
+			layer = pool.invoke(new Expand(search, all, 0, all.length, 0, TICK));
+			if (search.stopped() || search.outOfTime())
+				break;
+		}
+
+		int found = search.found.get();
+		int[] keys = (found >= 0) ? path(visited::parent, visited::action, found) : null;
+		boolean exhausted = found < 0 && !search.limitReached && !search.timedOut;
+		return new Solution(getRoomName(), keys, visited.size(), search.expanded.sum(), System.nanoTime() - t0,
+				exhausted);
+	}
+
+	// Estado partilhado de uma pesquisa
+	private static class Search {
+		private final StripedStateStore visited;
+		private final int maxStates;
+		private final long t0;
+		private final long budgetNanos; // Long.MAX_VALUE = sem limite de tempo
+		private final AtomicInteger found = new AtomicInteger(-1);
+		private final LongAdder expanded = new LongAdder();
+		private volatile boolean limitReached = false;
+		private volatile boolean timedOut = false;
+
+		Search(StripedStateStore visited, int maxStates, long t0, long budgetNanos) {
+			this.visited = visited;
+			this.maxStates = maxStates;
+			this.t0 = t0;
+			this.budgetNanos = budgetNanos;
+		}
+
+		boolean stopped() {
+			return found.get() >= 0 || limitReached || timedOut;
+		}
+
+		// Passou o prazo? (fica marcado, para as outras tarefas pararem também)
+		boolean outOfTime() {
+			if (budgetNanos != Long.MAX_VALUE && System.nanoTime() - t0 > budgetNanos)
+				timedOut = true;
+			return timedOut;
+		}
+	}
+
+	// Expande frontier[from, to) com as ações [firstAction, endAction); devolve os estados novos
+	private class Expand extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final Search search;
+		private final int[] frontier;
+		private final int from;
+		private final int to;
+		private final int firstAction;
+		private final int endAction;
+
+		Expand(Search search, int[] frontier, int from, int to, int firstAction, int endAction) {
+			this.search = search;
+			this.frontier = frontier;
+			this.from = from;
+			this.to = to;
+			this.firstAction = firstAction;
+			this.endAction = endAction;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (to - from > CHUNK) {
+				int mid = (from + to) >>> 1;
+				Expand left = new Expand(search, frontier, from, mid, firstAction, endAction);
+				left.fork();
+				int[] right = new Expand(search, frontier, mid, to, firstAction, endAction).compute();
+				return concat(Arrays.asList(left.join(), right));
+			}
+
+			int[] out = new int[(to - from) * (endAction - firstAction)];
+			int n = 0;
+			for (int i = from; i < to && !search.stopped() && !search.outOfTime(); i++) {
+				int cur = frontier[i];
+				byte[] state = search.visited.get(cur);
+				if (endAction > TICK)
+					search.expanded.increment();
+				for (int a = firstAction; a < endAction; a++) {
+					byte[] next = successor(state, a);
+					if (next == null)
+						continue;
+					int id = search.visited.add(next, cur, (byte) a);
+					if (id < 0)
+						continue;
+					if (isGoal(next)) {
+						search.found.compareAndSet(-1, id);
+						break;
+					}
+					if (search.visited.size() >= search.maxStates)
+						search.limitReached = true;
+					out[n++] = id;
+				}
+			}
+			return Arrays.copyOf(out, n);
+		}
+	}
+
+	private static int[] concat(List<int[]> parts) {
+		int n = 0;
+		for (int[] p : parts)
+			n += p.length;
+		int[] all = new int[n];
+		int i = 0;
+		for (int[] p : parts) {
+			System.arraycopy(p, 0, all, i, p.length);
+			i += p.length;
+		}
+		return all;
+	}
+
+	public static void main(String[] args) {
+		File dir = new File("./rooms");
+		int max = DEFAULT_MAX_STATES;
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-max") && i + 1 < args.length)
+				max = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-threads") && i + 1 < args.length)
+				threads = Integer.parseInt(args[++i]);
+			else
+				dir = new File(args[i]);
+		}
+
+		File[] files = dir.listFiles((d, n) -> n.endsWith(".txt"));
+		if (files == null || files.length == 0) {
+			System.err.println("Sem salas em " + dir);
+			return;
+		}
+		Arrays.sort(files);
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		System.out.println(threads + " threads");
+		for (File f : files) {
+			Room room = Room.readRoom(f, null);
+			if (room != null)
+				System.out.println(new ParallelSolver(room, pool).solve(max));
+		}
+		pool.shutdown();
+	}
+}
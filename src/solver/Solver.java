@@ -0,0 +1,351 @@
+package solver;
+
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+import highscores.Highscore;
+import highscores.HighscoreManager;
+import objects.BigFish;
+import objects.GameCharacter;
+import objects.SmallFish;
+import pt.iscte.poo.game.DeadlockAnalysis;
+import pt.iscte.poo.game.Room;
+import pt.iscte.poo.utils.Direction;
+
+/**
+ * Procura em largura (BFS) da sequência mais curta de teclas (setas e
+ * SPACE) que tira os dois peixes da sala. Cada passo usa as regras
+ * verdadeiras: reconstrói a sala a partir do estado e chama move() no peixe
+ * controlado, ou applyGravity() para um tick.
+ * <p>
+ * Como no jogo, o tempo corre à parte das teclas (um tick a cada 500 ms), por
+ * isso o tick também é uma ação, mas não conta para o custo: a pesquisa
+ * avança por número de teclas e, dentro de cada nível, esgota primeiro os
+ * ticks. Assim encontra soluções que precisam de várias jogadas no mesmo
+ * tick (ex: empurrar uma bomba antes de ela cair).
+ * <p>
+ * Simplificações, em relação ao jogo real:
+ * <ul>
+ * <li>os caranguejos não dão o seu passo aleatório (ficam onde estão, mas
+ * caem e reagem a empurrões);</li>
+ * <li>os efeitos visuais das explosões não entram no estado.</li>
+ * </ul>
+ * <p>
+ * Os estados em que um peixe já não consegue sair (ver {@link DeadlockAnalysis})
+ * são descartados logo, como se o peixe tivesse morrido.
+ * <p>
+ * Uso: {@code java solver.Solver [pasta de salas] [-max estados]}
+ */
+public class Solver {
+
+	public static final int DEFAULT_MAX_STATES = 2_000_000;
+
+	// Tecla "nenhuma": só passa um tick
+	public static final int TICK_KEY = -1;
+
+	// Ações: 4 direções, trocar de peixe e deixar passar um tick
+	static final int[] ACTION_KEYS = { KeyEvent.VK_UP, KeyEvent.VK_DOWN, KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT,
+			KeyEvent.VK_SPACE, TICK_KEY };
+	static final char[] ACTION_NAMES = { 'U', 'D', 'L', 'R', 'S', 'T' };
+	static final int SWITCH = 4;
+	static final int TICK = 5;
+
+	// Resultado da pesquisa
+	public static class Solution {
+		private final String room;
+		private final int[] keys; // null se não encontrou; TICK_KEY = passa um tick
+		private final int states;
+		private final long expanded;
+		private final long nanos;
+		private final boolean exhausted; // true se explorou tudo sem solução
+
+		Solution(String room, int[] keys, int states, long expanded, long nanos, boolean exhausted) {
+			this.room = room;
+			this.keys = keys;
+			this.states = states;
+			this.expanded = expanded;
+			this.nanos = nanos;
+			this.exhausted = exhausted;
+		}
+
+		public boolean isSolved() {
+			return keys != null;
+		}
+
+		// Teclas da solução (setas, SPACE e TICK_KEY)
+		public int[] getKeys() {
+			return keys;
+		}
+
+		// Só as jogadas com setas (como o contador de moves do jogo)
+		public int getMoves() {
+			return count(false);
+		}
+
+		// Setas e SPACE
+		public int getKeyCount() {
+			return count(true);
+		}
+
+		private int count(boolean withSwitch) {
+			int n = 0;
+			if (keys != null)
+				for (int k : keys)
+					if (k != TICK_KEY && (withSwitch || k != KeyEvent.VK_SPACE))
+						n++;
+			return n;
+		}
+
+		public int getStates() {
+			return states;
+		}
+
+		// Estados cujos sucessores foram gerados
+		public long getExpanded() {
+			return expanded;
+		}
+
+		public double getExpandedPerSecond() {
+			return expanded / Math.max(nanos / 1e9, 1e-9);
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public boolean isExhausted() {
+			return exhausted;
+		}
+
+		// Ex: "R R U S L"
+		public String getPath() {
+			if (keys == null)
+				return "";
+			StringBuilder sb = new StringBuilder();
+			for (int k : keys) {
+				for (int a = 0; a < ACTION_KEYS.length; a++)
+					if (ACTION_KEYS[a] == k)
+						sb.append(ACTION_NAMES[a]).append(' ');
+			}
+			return sb.toString().trim();
+		}
+
+		@Override
+		public String toString() {
+			double secs = nanos / 1e9;
+			String what;
+			if (isSolved())
+				what = getMoves() + " movimentos (" + getKeyCount() + " teclas): " + getPath();
+			else if (exhausted)
+				what = "SEM SOLUÇÃO";
+			else
+				what = "limite de estados (ou de tempo) atingido";
+			return room + ": " + what + " | estados=" + states + " | expandidos=" + expanded
+					+ String.format(" | %.0f nós/s | %.2f s", getExpandedPerSecond(), secs);
+		}
+	}
+
+	protected final StateCodec codec;
+	protected final byte[] initial;
+	protected final DeadlockAnalysis deadlocks;
+	private final String roomName;
+
+	// A sala não é alterada: o solver trabalha sobre cópias
+	public Solver(Room room) {
+		this(room, StateCodec.BIG);
+	}
+
+	// controlled: StateCodec.BIG ou SMALL, o peixe controlado no início
+	public Solver(Room room, int controlled) {
+		this.roomName = room.getName();
+		this.codec = new StateCodec(room);
+		this.deadlocks = DeadlockAnalysis.of(room);
+		this.initial = codec.encode(room, pickControlled(room, controlled));
+	}
+
+	public String getRoomName() {
+		return roomName;
+	}
+
+	public Solution solve() {
+		return solve(DEFAULT_MAX_STATES);
+	}
+
+	public Solution solve(int maxStates) {
+		return solve(maxStates, Long.MAX_VALUE);
+	}
+
+	// Pára ao fim de budgetNanos (Long.MAX_VALUE = sem limite de tempo), como se
+	// tivesse atingido o limite de estados
+	public Solution solve(int maxStates, long budgetNanos) {
+		long t0 = System.nanoTime();
+		boolean timed = budgetNanos != Long.MAX_VALUE;
+		StateStore visited = new StateStore();
+		visited.add(initial, -1, (byte) -1);
+		if (isGoal(initial))
+			return new Solution(roomName, new int[0], 1, 0, System.nanoTime() - t0, false);
+
+		// Os estados são numerados pela ordem em que entram, por isso cada nível
+		// (mesmo número de teclas) é um intervalo [from, to) do StateStore
+		long expanded = 0;
+		int from = 0;
+		while (from < visited.size()) {
+			// 1) ticks: custo 0, ficam no mesmo nível
+			for (int cur = from; cur < visited.size(); cur++) {
+				if (timed && System.nanoTime() - t0 > budgetNanos)
+					return result(visited, -1, expanded, t0);
+				int found = expand(visited, cur, TICK, TICK + 1, maxStates);
+				if (found != 0)
+					return result(visited, found, expanded, t0);
+			}
+			// 2) teclas: geram o nível seguinte
+			int to = visited.size();
+			for (int cur = from; cur < to; cur++) {
+				if (timed && System.nanoTime() - t0 > budgetNanos)
+					return result(visited, -1, expanded, t0);
+				expanded++;
+				int found = expand(visited, cur, 0, TICK, maxStates);
+				if (found != 0)
+					return result(visited, found, expanded, t0);
+			}
+			from = to;
+		}
+		return new Solution(roomName, null, visited.size(), expanded, System.nanoTime() - t0, true);
+	}
+
+	// 0 = continuar; id > 0 = objetivo atingido; -1 = limite de estados
+	private int expand(StateStore visited, int cur, int firstAction, int endAction, int maxStates) {
+		byte[] state = visited.get(cur);
+		for (int a = firstAction; a < endAction; a++) {
+			byte[] next = successor(state, a);
+			if (next == null)
+				continue;
+			int id = visited.add(next, cur, (byte) a);
+			if (id < 0)
+				continue;
+			if (isGoal(next))
+				return id;
+			if (visited.size() >= maxStates)
+				return -1;
+		}
+		return 0;
+	}
+
+	private Solution result(StateStore visited, int found, long expanded, long t0) {
+		int[] keys = (found > 0) ? path(visited::parent, visited::action, found) : null;
+		return new Solution(roomName, keys, visited.size(), expanded, System.nanoTime() - t0, false);
+	}
+
+	// Estado depois da ação; null se a ação não se aplica, se um peixe morre ou
+	// se um peixe fica sem saída
+	protected byte[] successor(byte[] state, int action) {
+		int controlled = StateCodec.controlled(state);
+
+		if (action == SWITCH) {
+			if (!hasFish(state, 'B') || !hasFish(state, 'S'))
+				return null;
+			return StateCodec.withControlled(state, 1 - controlled);
+		}
+
+		Room room = codec.decode(state);
+		if (action == TICK) {
+			room.applyGravity();
+		} else {
+			GameCharacter fish = (controlled == StateCodec.BIG) ? room.getBigFish() : room.getSmallFish();
+			if (fish == null)
+				return null;
+			fish.move(Direction.directionFor(ACTION_KEYS[action]).asVector());
+		}
+
+		BigFish big = room.getBigFish();
+		SmallFish small = room.getSmallFish();
+		if ((big != null && !big.isAlive()) || (small != null && !small.isAlive()))
+			return null;
+		if (deadlocks.refresh(room).isDead(room))
+			return null;
+		return codec.encode(room, pickControlled(room, controlled));
+	}
+
+	// Ninguém na sala = os dois peixes saíram
+	protected static boolean isGoal(byte[] state) {
+		return !hasFish(state, 'B') && !hasFish(state, 'S');
+	}
+
+	static boolean hasFish(byte[] state, char token) {
+		for (int i = 3; i < state.length; i += 3)
+			if (state[i] == (byte) token)
+				return true;
+		return false;
+	}
+
+	// Como no motor: se o peixe controlado saiu, passa para o outro
+	private static int pickControlled(Room room, int controlled) {
+		boolean big = inPlay(room.getBigFish());
+		boolean small = inPlay(room.getSmallFish());
+		if (big && small)
+			return controlled;
+		if (small)
+			return StateCodec.SMALL;
+		return StateCodec.BIG;
+	}
+
+	private static boolean inPlay(GameCharacter fish) {
+		return fish != null && fish.isAlive() && !fish.isOut();
+	}
+
+	// Teclas desde o estado inicial até id, seguindo os pais
+	static int[] path(IntUnaryOperator parent, IntFunction<Byte> action, int id) {
+		List<Integer> rev = new ArrayList<>();
+		for (int s = id; parent.applyAsInt(s) >= 0; s = parent.applyAsInt(s))
+			rev.add(ACTION_KEYS[action.apply(s)]);
+		int[] keys = new int[rev.size()];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = rev.get(keys.length - 1 - i);
+		return keys;
+	}
+
+	public static void main(String[] args) {
+		File dir = new File("./rooms");
+		int max = DEFAULT_MAX_STATES;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-max") && i + 1 < args.length)
+				max = Integer.parseInt(args[++i]);
+			else
+				dir = new File(args[i]);
+		}
+
+		File[] files = dir.listFiles((d, n) -> n.endsWith(".txt"));
+		if (files == null || files.length == 0) {
+			System.err.println("Sem salas em " + dir);
+			return;
+		}
+		Arrays.sort(files);
+
+		int total = 0;
+		boolean all = true;
+		for (File f : files) {
+			Room room = Room.readRoom(f, null);
+			if (room == null)
+				continue;
+			Solution s = new Solver(room).solve(max);
+			System.out.println(s);
+			if (s.isSolved())
+				total += s.getMoves();
+			else
+				all = false;
+		}
+
+		if (all) {
+			System.out.println("Mínimo total: " + total + " movimentos");
+			List<Highscore> scores = new HighscoreManager().getScores();
+			if (!scores.isEmpty())
+				System.out.println("Melhor highscore: " + scores.get(0).getMoves() + " movimentos ("
+						+ scores.get(0).getName() + ")");
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package solver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import objects.Bomb;
+import objects.Effect;
+import objects.GameCharacter;
+import objects.GameObject;
+import objects.Movable;
+import objects.ObjectType;
+import objects.Water;
+import pt.iscte.poo.game.Room;
+import pt.iscte.poo.game.RoomTemplate;
+import pt.iscte.poo.utils.Point2D;
+
+/**
+ * Codificação compacta e canónica do estado de uma sala, e o inverso (criar
+ * uma Room com esse estado, para lhe aplicar as regras verdadeiras).
+ * <p>
+ * A água é sempre a mesma e fica de fora. Os objetos fixos (paredes, aço,
+ * troncos) quase nunca mudam, por isso cada combinação diferente é guardada
+ * uma vez e o estado só leva o seu número. O resto vai por extenso:
+ * 
+ * <pre>
+ * byte   peixe controlado (0 = BigFish, 1 = SmallFish)
+ * short  número da camada fixa
+ * por objeto móvel, pela ordem da sala: token, x, y (um byte cada)
+ * </pre>
+ * 
+ * Por isso só serve para salas até {@value #MAX_SIZE}x{@value #MAX_SIZE}.
+ * 
+ * O bit mais alto do token marca uma bomba em queda (a que explode ao
+ * aterrar). Manter a ordem da sala faz com que a gravidade (que segue essa
+ * ordem) dê o mesmo resultado na sala reconstruída. Os efeitos visuais
+ * (Effect) ficam de fora.
+ */
+public class StateCodec {
+
+	public static final int BIG = 0;
+	public static final int SMALL = 1;
+
+	static final int HEADER = 3;
+	static final int FALLING = 0x80;
+
+	// x e y vão num byte (sem sinal)
+	public static final int MAX_SIZE = 256;
+
+	private final String name;
+	private final int width;
+	private final int height;
+	private final char[] water; // ' ' onde há água, NO_CELL onde a sala não tem célula
+
+	// Camadas fixas já vistas. Usadas por várias threads no ParallelSolver: ler não
+	// leva lock (quase sempre a camada já existe), só acrescentar uma nova
+	private final List<byte[]> staticLayers = new CopyOnWriteArrayList<>();
+	private final Map<ByteBuffer, Integer> staticIds = new ConcurrentHashMap<>();
+
+	public StateCodec(Room room) {
+		this.name = room.getName();
+		this.width = room.getWidth();
+		this.height = room.getHeight();
+		if (width > MAX_SIZE || height > MAX_SIZE)
+			throw new IllegalArgumentException(
+					"sala demasiado grande para o solver (máximo " + MAX_SIZE + "x" + MAX_SIZE + "): " + width + "x" + height);
+		this.water = new char[width * height];
+		for (int i = 0; i < water.length; i++)
+			water[i] = RoomTemplate.NO_CELL;
+		for (GameObject go : room.getGameObjects()) {
+			Point2D p = go.getPosition();
+			if (go instanceof Water && p != null && p.getX() >= 0 && p.getX() < width && p.getY() >= 0
+					&& p.getY() < height)
+				water[p.getY() * width + p.getX()] = ' ';
+		}
+	}
+
+	public byte[] encode(Room room, int controlled) {
+		List<GameObject> all = room.getGameObjects();
+		byte[] fixed = new byte[all.size() * 3];
+		byte[] moving = new byte[HEADER + all.size() * 3];
+		int nf = 0;
+		int nm = HEADER;
+
+		for (GameObject go : all) {
+			if (go instanceof Water || go instanceof Effect)
+				continue;
+			char token = ObjectType.tokenOf(go);
+			Point2D p = go.getPosition();
+			if (token == '\0' || p == null)
+				continue;
+			// caiu para fora da sala (ex: um caranguejo numa coluna sem fundo): já não
+			// interage com nada, e cada tick de queda seria mais um estado diferente
+			if (p.getX() < 0 || p.getX() >= width || p.getY() < 0 || p.getY() >= height)
+				continue;
+			if (go instanceof Movable || go instanceof GameCharacter)
+				nm = put(moving, nm, isFalling(go) ? (char) (token | FALLING) : token, p);
+			else
+				nf = put(fixed, nf, token, p);
+		}
+
+		int layer = internStatic(Arrays.copyOf(fixed, nf));
+		moving[0] = (byte) controlled;
+		moving[1] = (byte) (layer >>> 8);
+		moving[2] = (byte) layer;
+		return Arrays.copyOf(moving, nm);
+	}
+
+	public Room decode(byte[] state) {
+		byte[] fixed = staticLayer(layerOf(state));
+		int n = fixed.length / 3 + (state.length - HEADER) / 3;
+		int[] extras = new int[n * 3];
+		int e = 0;
+		for (int i = 0; i < fixed.length; i += 3)
+			e = get(fixed, i, extras, e);
+		for (int i = HEADER; i < state.length; i += 3)
+			e = get(state, i, extras, e);
+		Room room = RoomTemplate.of(name, width, height, water, extras).instantiate(null);
+
+		// bombas em queda: repor o estado (o template só sabe criar bombas paradas)
+		for (int i = HEADER; i < state.length; i += 3) {
+			if ((state[i] & FALLING) == 0)
+				continue;
+			for (GameObject go : room.getObjectsAt(new Point2D(state[i + 1] & 0xFF, state[i + 2] & 0xFF)))
+				if (go instanceof Bomb)
+					room.changeState(go, new boolean[] { true, true });
+		}
+		return room;
+	}
+
+	// Chave canónica de um estado, igual para o mesmo conteúdo seja qual for o
+	// codec que o codificou: o número da camada fixa só vale neste codec, por
+	// isso a chave leva a própria camada
+	public String key(byte[] state) {
+		byte[] fixed = staticLayer(layerOf(state));
+		return name + '\0' + state[0] + '\0' + fixed.length + '\0'
+				+ new String(fixed, StandardCharsets.ISO_8859_1)
+				+ new String(state, HEADER, state.length - HEADER, StandardCharsets.ISO_8859_1);
+	}
+
+	public static int controlled(byte[] state) {
+		return state[0];
+	}
+
+	// Mesmo estado com outro peixe controlado
+	public static byte[] withControlled(byte[] state, int controlled) {
+		byte[] s = state.clone();
+		s[0] = (byte) controlled;
+		return s;
+	}
+
+	private static int layerOf(byte[] state) {
+		return ((state[1] & 0xFF) << 8) | (state[2] & 0xFF);
+	}
+
+	private int internStatic(byte[] layer) {
+		ByteBuffer key = ByteBuffer.wrap(layer);
+		Integer id = staticIds.get(key);
+		if (id != null)
+			return id;
+		return addStatic(key, layer);
+	}
+
+	private synchronized int addStatic(ByteBuffer key, byte[] layer) {
+		Integer id = staticIds.get(key);
+		if (id != null)
+			return id;
+		if (staticLayers.size() > 0xFFFF)
+			throw new IllegalStateException("demasiadas camadas fixas diferentes");
+		id = staticLayers.size();
+		staticLayers.add(layer);
+		staticIds.put(key, id);
+		return id;
+	}
+
+	private byte[] staticLayer(int id) {
+		return staticLayers.get(id);
+	}
+
+	private static boolean isFalling(GameObject go) {
+		return go instanceof Bomb && ((Bomb) go).isFalling();
+	}
+
+	private static int put(byte[] out, int i, char token, Point2D p) {
+		out[i] = (byte) token;
+		out[i + 1] = (byte) p.getX();
+		out[i + 2] = (byte) p.getY();
+		return i + 3;
+	}
+
+	private static int get(byte[] in, int i, int[] extras, int e) {
+		extras[e] = in[i + 1] & 0xFF;
+		extras[e + 1] = in[i + 2] & 0xFF;
+		extras[e + 2] = in[i] & ~FALLING & 0xFF;
+		return e + 3;
+	}
+}
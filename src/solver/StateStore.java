@@ -0,0 +1,146 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de estados visitados para a pesquisa, sem um objeto Java por
+ * estado: os bytes de todos os estados ficam seguidos num único array, e o
+ * índice é uma tabela de dispersão aberta de ints. Cada estado guarda
+ * também o pai e a ação que lá levou, para reconstruir a solução.
+ * <p>
+ * Custo por estado: os seus bytes + ~21 bytes de índice.
+ */
+public class StateStore {
+
+	private static final int EMPTY = -1;
+
+	private byte[] arena = new byte[1 << 16];
+	private int arenaSize = 0;
+
+	private int[] start = new int[1024]; // start[i]..start[i+1] = bytes do estado i
+	private int[] hashes = new int[1024];
+	private int[] parents = new int[1024];
+	private byte[] actions = new byte[1024];
+	private int size = 0;
+
+	private int[] table = newTable(1 << 12);
+	private int mask = table.length - 1;
+
+	public int size() {
+		return size;
+	}
+
+	// Número do estado novo, ou -1 se já existia
+	public int add(byte[] state, int parent, byte action) {
+		int h = hash(state);
+		int slot = h & mask;
+		while (table[slot] != EMPTY) {
+			int id = table[slot];
+			if (hashes[id] == h && sameBytes(id, state))
+				return -1;
+			slot = (slot + 1) & mask;
+		}
+
+		int id = append(state, h, parent, action);
+		table[slot] = id;
+		if (size * 2 > table.length)
+			rehash();
+		return id;
+	}
+
+	public boolean contains(byte[] state) {
+		int h = hash(state);
+		int slot = h & mask;
+		while (table[slot] != EMPTY) {
+			int id = table[slot];
+			if (hashes[id] == h && sameBytes(id, state))
+				return true;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public byte[] get(int id) {
+		return Arrays.copyOfRange(arena, start[id], start[id + 1]);
+	}
+
+	public int parent(int id) {
+		return parents[id];
+	}
+
+	public byte action(int id) {
+		return actions[id];
+	}
+
+	// Bytes ocupados (aproximado), para relatórios
+	public long memoryBytes() {
+		return arena.length + 4L * (start.length + hashes.length + parents.length + table.length) + actions.length;
+	}
+
+	private int append(byte[] state, int h, int parent, byte action) {
+		if (size + 2 > start.length) {
+			int n = start.length * 2;
+			start = Arrays.copyOf(start, n);
+			hashes = Arrays.copyOf(hashes, n);
+			parents = Arrays.copyOf(parents, n);
+			actions = Arrays.copyOf(actions, n);
+		}
+		if (arenaSize + state.length > arena.length) {
+			long n = Math.max((long) arena.length * 2, (long) arenaSize + state.length);
+			if (n > Integer.MAX_VALUE - 8)
+				throw new OutOfMemoryError("StateStore cheio");
+			arena = Arrays.copyOf(arena, (int) n);
+		}
+
+		int id = size++;
+		System.arraycopy(state, 0, arena, arenaSize, state.length);
+		start[id] = arenaSize;
+		arenaSize += state.length;
+		start[id + 1] = arenaSize;
+		hashes[id] = h;
+		parents[id] = parent;
+		actions[id] = action;
+		return id;
+	}
+
+	private boolean sameBytes(int id, byte[] state) {
+		int from = start[id];
+		int len = start[id + 1] - from;
+		if (len != state.length)
+			return false;
+		for (int i = 0; i < len; i++)
+			if (arena[from + i] != state[i])
+				return false;
+		return true;
+	}
+
+	private void rehash() {
+		table = newTable(table.length * 2);
+		mask = table.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while (table[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			table[slot] = id;
+		}
+	}
+
+	private static int[] newTable(int n) {
+		int[] t = new int[n];
+		Arrays.fill(t, EMPTY);
+		return t;
+	}
+
+	// FNV-1a com mistura final (a tabela usa os bits de baixo)
+	static int hash(byte[] s) {
+		int h = 0x811C9DC5;
+		for (byte b : s) {
+			h ^= b;
+			h *= 0x01000193;
+		}
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		return h;
+	}
+}
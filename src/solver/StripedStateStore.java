@@ -0,0 +1,80 @@
+package solver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * StateStore partilhado por várias threads: os estados são repartidos por
+ * 64 StateStores (pelo hash) e cada um tem o seu lock, por isso threads que
+ * inserem estados diferentes quase nunca esperam umas pelas outras.
+ * <p>
+ * O número global de um estado junta a faixa (6 bits de cima) com o número
+ * dentro da faixa (25 bits), e é o que se guarda como pai.
+ */
+public class StripedStateStore {
+
+	private static final int STRIPE_BITS = 6;
+	private static final int STRIPES = 1 << STRIPE_BITS;
+	private static final int LOCAL_BITS = 31 - STRIPE_BITS;
+	private static final int LOCAL_MASK = (1 << LOCAL_BITS) - 1;
+
+	private final StateStore[] stripes = new StateStore[STRIPES];
+	private final AtomicInteger size = new AtomicInteger();
+
+	public StripedStateStore() {
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new StateStore();
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	// Número global do estado novo, ou -1 se já existia
+	public int add(byte[] state, int parent, byte action) {
+		int h = StateStore.hash(state);
+		// os bits de cima escolhem a faixa; a tabela de cada faixa usa os de baixo
+		int stripe = h >>> (32 - STRIPE_BITS);
+		StateStore s = stripes[stripe];
+		int local;
+		synchronized (s) {
+			local = s.add(state, parent, action);
+		}
+		if (local < 0)
+			return -1;
+		if (local > LOCAL_MASK)
+			throw new IllegalStateException("StripedStateStore cheio");
+		size.incrementAndGet();
+		return (stripe << LOCAL_BITS) | local;
+	}
+
+	public byte[] get(int id) {
+		StateStore s = stripes[id >>> LOCAL_BITS];
+		synchronized (s) {
+			return s.get(id & LOCAL_MASK);
+		}
+	}
+
+	public int parent(int id) {
+		StateStore s = stripes[id >>> LOCAL_BITS];
+		synchronized (s) {
+			return s.parent(id & LOCAL_MASK);
+		}
+	}
+
+	public byte action(int id) {
+		StateStore s = stripes[id >>> LOCAL_BITS];
+		synchronized (s) {
+			return s.action(id & LOCAL_MASK);
+		}
+	}
+
+	public long memoryBytes() {
+		long total = 0;
+		for (StateStore s : stripes) {
+			synchronized (s) {
+				total += s.memoryBytes();
+			}
+		}
+		return total;
+	}
+}